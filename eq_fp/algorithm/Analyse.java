@@ -12,23 +12,57 @@ package eq_fp.algorithm;
 
 
 import eq_fp.model.AnalysisModel;
+import eq_fp.model.AnalysisSnapshot;
+import eq_fp.model.EventCluster;
+import eq_fp.model.EventIndex;
+import eq_fp.model.Footprint;
 import eq_fp.model.TargetEvent;
 import eq_fp.model.ReadData;
 import eq_fp.util.EqConst;
-import org.licas.ai_solver.model.result.Cluster;
 
 import java.io.FileOutputStream;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 
 /** Analyse the data for significant patterns */
 public class Analyse {
 
+    /** Number of threads to score the target events with */
+    protected int numThreads;
+
+    /** Cache of target scores, or null to not cache */
+    protected ScoreCache scoreCache;
+
+
     /**
-     * Create a new instance of Analyse.
+     * Create a new instance of Analyse, using all of the available processors.
      */
     public Analyse()
-    {}
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a new instance of Analyse.
+     * @param numThreads number of threads to score with, 1 to run sequentially.
+     */
+    public Analyse(int numThreads)
+    {
+        this.numThreads = Math.max(numThreads, 1);
+        scoreCache = null;
+    }
+
+    /**
+     * Set the cache for the target scores, which can be shared with a simulation.
+     * @param scoreCache the score cache, or null to not cache.
+     */
+    public void setScoreCache(ScoreCache scoreCache) {
+        this.scoreCache = scoreCache;
+    }
 
     /**
      * Compare the patterns for similarity / difference.
@@ -41,24 +75,53 @@ public class Analyse {
     public void analyse(String[] args, String eventsFile, String clustersFile,
                         String analysisFile) throws Exception {
 
-        ArrayList<Cluster> clusters;                        //generated clusters
-        AnalysisModel am;                                   //analysis model
-        LinkedHashMap<String, ArrayList<String>> dataRows;  //all data rows
+        ArrayList<EventCluster> clusters;                        //generated clusters
+        EventIndex index;                                   //index of all data rows
 
         try {
-            dataRows = ReadData.readEvents(eventsFile);
+            index = ReadData.readEventIndex(eventsFile);
             clusters = ReadData.readClusters(clustersFile);
             System.out.println("Data Read.");
 
+            analyse(args, index, clusters, analysisFile);
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Compare the patterns for similarity / difference, for events and clusters that
+     * are already read, such as straight after they are formatted.
+     * @param args input arguments.
+     * @param index index of the events.
+     * @param clusters the clusters.
+     * @param analysisFile file to save the analysis to.
+     * @return the snapshot of the analysis, as written next to the analysis file.
+     * @throws java.lang.Exception any error.
+     */
+    public AnalysisSnapshot analyse(String[] args, EventIndex index, ArrayList<EventCluster> clusters,
+                                    String analysisFile) throws Exception {
+
+        AnalysisModel am;                                   //analysis model
+        AnalysisSnapshot snapshot;                          //analysis snapshot
+
+        try {
             //analyse patterns related to the significant event
-            am = compareEvents(args, dataRows, clusters);
+            am = compareEvents(args, index, clusters);
 
             //print out the result
             printAnalysis(am);
             writeAnalysis(am, analysisFile);
 
+            //the snapshot lets a simulation start without reading the analysis file
+            snapshot = AnalysisSnapshot.create(am, index, clusters, args);
+            snapshot.write(analysisFile);
+
             //do some stats on the result
             analysisStats(am);
+
+            return snapshot;
         }
         catch (Exception ex) {
             throw ex;
@@ -67,25 +130,36 @@ public class Analyse {
 
     /**
      * Compare the patterns for changes.
-     * @param dataRows input events.
+     * Target events on the same date have the same time window, so each target is
+     * scored once for each distinct window. The windows are scored in parallel and
+     * the results are then added to the model in target order, as a sequential
+     * run would.
+     * @param index index of the input events.
      * @param clusters global clusters.
      * @param args input arguments.
      * @return the generated analysis.
+     * @throws java.lang.Exception any error.
      */
-    private AnalysisModel compareEvents(String[] args,
-                                        LinkedHashMap<String, ArrayList<String>> dataRows,
-                                        ArrayList<Cluster> clusters) {
+    private AnalysisModel compareEvents(String[] args, EventIndex index,
+                                        ArrayList<EventCluster> clusters) throws Exception {
 
         int i, j;
         int minMag;                                         //minimum magnitude to find
         int unitsBefore;                                    //number time units before
-        long start, end;                                    //start and time range
+        int window;                                         //window number
+        long windowSize;                                    //size of the time window
         String unitSize;                                    //time unit size
-        String ana1, ana2;                                  //analysis description
+        String ana1;                                        //analysis key
+        int[] targetWindow;                                 //window number for each target
+        Footprint[][] windowScores;                         //scores for each window and target
+        ArrayList<Long> windowEnds;                         //end time for each window
+        HashMap<Long, Integer> windowNumbers;               //window number for each end time
+        ArrayList<Callable<Footprint[]>> tasks;             //scoring task for each window
+        List<Future<Footprint[]>> results;                  //scoring results
+        ExecutorService executor;                           //to run the scoring tasks
         AnalysisModel am;                                   //analysis model
-        TargetEvent tg, tg2;                                //target event
+        TargetEvent tg;                                     //target event
         TargetScore ts;                                     //to evaluate the events
-        Date date;                                          //date time
 
         //scan and retrieve all events with magnitude larger than X
         // retrieve the clusters for those
@@ -96,28 +170,66 @@ public class Analyse {
         minMag = Integer.parseInt(args[0]);
         unitsBefore = Integer.parseInt(args[1]);
         unitSize = args[2];
-        am = new AnalysisModel(dataRows, clusters, minMag);
+        am = new AnalysisModel(index, clusters, minMag);
         ts = new TargetScore();
+        ts.setScoreCache(scoreCache);
+        windowSize = (EqConst.convertToMillisec(unitSize) * unitsBefore);
 
-        //get result for the event with event dates and other significant ones for same dates and compare
+        //get the distinct windows for dates before the significant dates
+        targetWindow = new int[am.targetEvents.size()];
+        windowEnds = new ArrayList<>();
+        windowNumbers = new HashMap<>();
         for (i = 0; i < am.targetEvents.size(); i++) {
-
             tg = am.targetEvents.get(i);
+            if (!windowNumbers.containsKey(index.dayTime(tg.day))) {
+                windowNumbers.put(index.dayTime(tg.day), windowEnds.size());
+                windowEnds.add(index.dayTime(tg.day));
+            }
+            targetWindow[i] = windowNumbers.get(index.dayTime(tg.day));
+        }
 
-            //get lists of events for dates before significant date
-            date = new Date(tg.date);
-            end = date.getTime();
-            start = (end - (EqConst.convertToMillisec(unitSize) * unitsBefore));
+        //score every target event for every window
+        tasks = new ArrayList<>();
+        for (long end : windowEnds) {
+            tasks.add(() -> {
+                Footprint[] scores = new Footprint[am.targetEvents.size()];
+                for (int k = 0; k < scores.length; k++) {
+                    scores[k] = ts.targetScore(am.targetEvents.get(k), (end - windowSize), end, index);
+                }
+                return scores;
+            });
+        }
+
+        windowScores = new Footprint[tasks.size()][];
+        if (numThreads > 1) {
+            executor = Executors.newFixedThreadPool(numThreads);
+            try {
+                results = executor.invokeAll(tasks);
+                for (window = 0; window < results.size(); window++) {
+                    windowScores[window] = results.get(window).get();
+                }
+            }
+            finally {
+                executor.shutdown();
+            }
+        }
+        else {
+            for (window = 0; window < tasks.size(); window++) {
+                windowScores[window] = tasks.get(window).call();
+            }
+        }
+
+        //get result for the event with event dates and other significant ones for same dates and compare
+        for (i = 0; i < am.targetEvents.size(); i++) {
+            window = targetWindow[i];
 
-            ana1 = ts.targetScore(tg, start, end, dataRows);
+            ana1 = windowScores[window][i].toCompoundKey();
             am.keyClusters.put(ana1, new ArrayList<>());
 
             for (j = 0; j < am.targetEvents.size(); j++) {
 
                 if (i != j) {
-                    tg2 = am.targetEvents.get(j);
-                    ana2 = ts.targetScore(tg2, start, end, dataRows);
-                    am.keyClusters.get(ana1).add(ana2);
+                    am.keyClusters.get(ana1).add(windowScores[window][j]);
                 }
             }
         }
@@ -131,47 +243,45 @@ public class Analyse {
      */
     private void analysisStats(AnalysisModel analysis) throws Exception {
         int count, num;                                     //count
-        String[] keyLoc, keyLoc2;                           //key and location
         ArrayList<Integer> relCount;                        //related counts
         ArrayList<String> sigKeys;                          //significant event keys
         ArrayList<String> relKeys;                          //related keys
-        ArrayList<String> events;                           //related events
+        ArrayList<Footprint> events;                        //related events
+        Footprint key, key2;                                //key event footprints
 
-        sigKeys = new ArrayList(analysis.keyClusters.keySet());
+        sigKeys = new ArrayList<>(analysis.keyClusters.keySet());
 
         //count percentage with valid key
         count = 0;
         num = 0;
 
-        for (String key : sigKeys) {
-            keyLoc = EqConst.fromCompoundKey(key);
-            if (EqConst.hasFootprint(keyLoc[0])) count++;
+        for (String sigKey : sigKeys) {
+            if (AnalysisModel.keyFootprint(sigKey).hasFootprint()) count++;
             num++;
         }
 
         System.out.println("\nPercentage of sig keys with footprint: " + ((float)count / (float)num) * 100);
 
         relCount = new ArrayList<>();
-        for (String key : sigKeys) {
-            keyLoc = EqConst.fromCompoundKey(key);
+        for (String sigKey : sigKeys) {
+            key = AnalysisModel.keyFootprint(sigKey);
 
-            if (EqConst.hasFootprint(keyLoc[0])) {
+            if (key.hasFootprint()) {
                 count = 1;
                 relKeys = new ArrayList<>();
-                relKeys.add(key);
+                relKeys.add(sigKey);
 
-                for (String key2 : sigKeys) {
-                    keyLoc2 = EqConst.fromCompoundKey(key2);
+                for (String sigKey2 : sigKeys) {
+                    key2 = AnalysisModel.keyFootprint(sigKey2);
 
-                    if (!keyLoc2[0].equalsIgnoreCase(keyLoc[0])) {
-                        events = analysis.keyClusters.get(key2);
+                    if (!key2.sameValues(key)) {
+                        events = analysis.keyClusters.get(sigKey2);
 
-                        for (String eventKey : events) {
-                            keyLoc2 = EqConst.fromCompoundKey(eventKey);
+                        for (Footprint eventKey : events) {
 
-                            if (keyLoc2[0].equalsIgnoreCase(keyLoc[0])) {
-                                if (!keyLoc2[1].equalsIgnoreCase(keyLoc[1])) {
-                                    relKeys.add(key2);
+                            if (eventKey.sameValues(key)) {
+                                if (!eventKey.event.equalsIgnoreCase(key.event)) {
+                                    relKeys.add(sigKey2);
                                     count++;
                                 }
                             }
@@ -198,9 +308,9 @@ public class Analyse {
     private void printAnalysis(AnalysisModel analysis) {
 
         ArrayList<String> keyList;                          //key list
-        ArrayList<String> valueList;                        //value list
+        ArrayList<Footprint> valueList;                     //value list
 
-        keyList = new ArrayList(analysis.keyClusters.keySet());
+        keyList = new ArrayList<>(analysis.keyClusters.keySet());
 
         System.out.println("\nKey events:");
         for (String key : keyList) {
@@ -212,8 +322,8 @@ public class Analyse {
             System.out.println("\n" + key);
 
             valueList = analysis.keyClusters.get(key);
-            for (String key2 : valueList) {
-                System.out.println("   " + key2);
+            for (Footprint key2 : valueList) {
+                System.out.println("   " + key2.toCompoundKey());
             }
         }
     }
@@ -227,11 +337,11 @@ public class Analyse {
 
         String descr;                                       //description
         ArrayList<String> keyList;                          //key list
-        ArrayList<String> valueList;                        //value list
+        ArrayList<Footprint> valueList;                     //value list
         FileOutputStream writer;                            //output file
 
         writer = new FileOutputStream(analysisFile);
-        keyList = new ArrayList(analysis.keyClusters.keySet());
+        keyList = new ArrayList<>(analysis.keyClusters.keySet());
 
         descr = (EqConst.TARGETEVENTS + "\n");
         writer.write(descr.getBytes());
@@ -257,8 +367,8 @@ public class Analyse {
             writer.write(descr.getBytes());
 
             valueList = analysis.keyClusters.get(key);
-            for (String key2 : valueList) {
-                descr = ("  " + key2 + "\n");
+            for (Footprint key2 : valueList) {
+                descr = ("  " + key2.toCompoundKey() + "\n");
                 writer.write(descr.getBytes());
             }
         }
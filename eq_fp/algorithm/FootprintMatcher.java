@@ -0,0 +1,220 @@
+/*
+ * FootprintMatcher.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.algorithm;
+
+
+import eq_fp.model.Footprint;
+
+
+/**
+ * Matches footprints against the target footprints in one pass. The target values
+ * are kept as float arrays, one array for each part, with the error margin of each
+ * part worked out once. A match is when the number of gaps, the average gap and the
+ * average count are all inside the margin, with the same float arithmetic as a
+ * single comparison. The result is a bitmask with one bit for each target.
+ * <p>
+ * The loops have no branches, so the JIT can unroll and vectorise the comparisons.
+ */
+public class FootprintMatcher {
+
+    /** Number of target footprints */
+    protected int numTargets;
+
+    /** Target number of gaps */
+    protected float[] numGaps;
+
+    /** Target average gap */
+    protected float[] avGaps;
+
+    /** Target average count */
+    protected float[] avCounts;
+
+    /** Error margin for the number of gaps */
+    protected float[] numGapErrors;
+
+    /** Error margin for the average gap */
+    protected float[] avGapErrors;
+
+    /** Error margin for the average count */
+    protected float[] avCountErrors;
+
+    /** Targets that have a footprint */
+    protected long[] footprintMask;
+
+    /** Candidate number of gaps for each target */
+    protected float[] candNumGaps;
+
+    /** Candidate average gap for each target */
+    protected float[] candAvGaps;
+
+    /** Candidate average count for each target */
+    protected float[] candAvCounts;
+
+    /** Targets with a candidate set since the last clear */
+    protected long[] candidateMask;
+
+
+    /**
+     * Create a new instance of FootprintMatcher.
+     * @param targets the footprint of each target, or null if a target has none.
+     * @param margin percent error margin either way.
+     */
+    public FootprintMatcher(Footprint[] targets, float margin) {
+        numTargets = targets.length;
+        numGaps = new float[numTargets];
+        avGaps = new float[numTargets];
+        avCounts = new float[numTargets];
+        numGapErrors = new float[numTargets];
+        avGapErrors = new float[numTargets];
+        avCountErrors = new float[numTargets];
+        footprintMask = new long[maskSize(numTargets)];
+        candNumGaps = new float[numTargets];
+        candAvGaps = new float[numTargets];
+        candAvCounts = new float[numTargets];
+        candidateMask = new long[footprintMask.length];
+
+        for (int i = 0; i < numTargets; i++) {
+            if ((targets[i] != null) && targets[i].hasFootprint()) {
+                numGaps[i] = targets[i].numGaps;
+                avGaps[i] = (float) targets[i].avGap;
+                avCounts[i] = (float) targets[i].avCount;
+                numGapErrors[i] = (numGaps[i] / 100.0f * margin);
+                avGapErrors[i] = (avGaps[i] / 100.0f * margin);
+                avCountErrors[i] = (avCounts[i] / 100.0f * margin);
+                footprintMask[i >>> 6] |= (1L << i);
+            }
+        }
+    }
+
+    /**
+     * Get the number of longs in a bitmask.
+     * @param numTargets number of targets.
+     * @return the mask size.
+     */
+    public static int maskSize(int numTargets) {
+        return ((numTargets + 63) >>> 6);
+    }
+
+    /**
+     * Return true if the bit for a target is set.
+     * @param mask the bitmask.
+     * @param target the target number.
+     * @return true if the bit is set.
+     */
+    public static boolean isSet(long[] mask, int target) {
+        return ((mask[target >>> 6] & (1L << target)) != 0);
+    }
+
+    /**
+     * Get the number of targets.
+     * @return the number of targets.
+     */
+    public int numTargets() {
+        return numTargets;
+    }
+
+    /**
+     * Return true if a target has a footprint to match against.
+     * @param target the target number.
+     * @return true if the target has at least one day gap.
+     */
+    public boolean hasFootprint(int target) {
+        return isSet(footprintMask, target);
+    }
+
+    /**
+     * Set the candidate footprint for a target, to match with matchCandidates.
+     * @param target the target number.
+     * @param candidate the candidate footprint.
+     */
+    public void setCandidate(int target, Footprint candidate) {
+        candNumGaps[target] = candidate.numGaps;
+        candAvGaps[target] = (float) candidate.avGap;
+        candAvCounts[target] = (float) candidate.avCount;
+        candidateMask[target >>> 6] |= (1L << target);
+    }
+
+    /**
+     * Clear the candidates that have been set.
+     */
+    public void clearCandidates() {
+        for (int i = 0; i < candidateMask.length; i++) {
+            candidateMask[i] = 0;
+        }
+    }
+
+    /**
+     * Match the candidate set for each target against that target's footprint.
+     * @return bitmask of the targets that match, out of the ones with a candidate.
+     */
+    public long[] matchCandidates() {
+        int i, j;
+        int last;                                           //end of the block
+        long word;                                          //bits for a block of targets
+        long[] mask;                                        //bitmask of matches
+
+        mask = new long[footprintMask.length];
+        for (i = 0; i < mask.length; i++) {
+            word = 0;
+            last = Math.min((i + 1) << 6, numTargets);
+            for (j = i << 6; j < last; j++) {
+                word |= (inside(numGaps[j], candNumGaps[j], numGapErrors[j])
+                        & inside(avGaps[j], candAvGaps[j], avGapErrors[j])
+                        & inside(avCounts[j], candAvCounts[j], avCountErrors[j])) << j;
+            }
+            mask[i] = (word & footprintMask[i] & candidateMask[i]);
+        }
+
+        return mask;
+    }
+
+    /**
+     * Match one footprint against every target footprint.
+     * @param candidate the candidate footprint.
+     * @return bitmask of the targets that match.
+     */
+    public long[] match(Footprint candidate) {
+        int i, j;
+        int last;                                           //end of the block
+        float candNumGap, candAvGap, candAvCount;           //candidate values
+        long word;                                          //bits for a block of targets
+        long[] mask;                                        //bitmask of matches
+
+        candNumGap = candidate.numGaps;
+        candAvGap = (float) candidate.avGap;
+        candAvCount = (float) candidate.avCount;
+
+        mask = new long[footprintMask.length];
+        for (i = 0; i < mask.length; i++) {
+            word = 0;
+            last = Math.min((i + 1) << 6, numTargets);
+            for (j = i << 6; j < last; j++) {
+                word |= (inside(numGaps[j], candNumGap, numGapErrors[j])
+                        & inside(avGaps[j], candAvGap, avGapErrors[j])
+                        & inside(avCounts[j], candAvCount, avCountErrors[j])) << j;
+            }
+            mask[i] = (word & footprintMask[i]);
+        }
+
+        return mask;
+    }
+
+    /**
+     * Test if a value is inside the error margin of the target value.
+     * @param target the target value.
+     * @param value the value to test.
+     * @param error the error margin.
+     * @return 1 if it is inside the margin, otherwise 0.
+     */
+    private static long inside(float target, float value, float error) {
+        return ((Math.abs(target - value) <= error) ? 1L : 0L);
+    }
+}
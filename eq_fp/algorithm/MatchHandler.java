@@ -0,0 +1,24 @@
+/*
+ * MatchHandler.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.algorithm;
+
+
+/** Receives the target matches of the online predictions, as each day is scored */
+public interface MatchHandler {
+
+    /**
+     * Process a match of a target footprint.
+     * @param targetKey the prediction key of the target, as in the predictions file.
+     * @param compareKey the window footprint and date of the match.
+     * @throws Exception any error.
+     */
+    void match(String targetKey, String compareKey) throws Exception;
+}
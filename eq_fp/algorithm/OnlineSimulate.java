@@ -0,0 +1,196 @@
+/*
+ * OnlineSimulate.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.algorithm;
+
+
+import eq_fp.model.BucketHandler;
+import eq_fp.model.EventCluster;
+import eq_fp.model.EventIndex;
+import eq_fp.model.Footprint;
+import eq_fp.model.ReadData;
+import eq_fp.util.EqConst;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Date;
+
+
+/**
+ * Runs the predictions on the days of a live feed, as they arrive. The targets and
+ * their footprints are read from the analysis of the events file, and each day that
+ * is closed is added to the window of every target and matched straight away, in the
+ * same way as a day of the events file is by Simulate.
+ */
+public class OnlineSimulate extends Simulate implements BucketHandler {
+
+    /** Size of the time window in milliseconds */
+    protected long windowSize;
+
+    /** Percent error margin either way */
+    protected float margin;
+
+    /** Time of the first day in the events file */
+    protected long firstTime;
+
+    /** Number of days in the events file, before the feed adds to it */
+    protected int numDays;
+
+    /** Target events and footprints */
+    protected Targets targets;
+
+    /** Matches the window footprints */
+    protected FootprintMatcher matcher;
+
+    /** To evaluate the events for each target */
+    protected WindowScorer[] scorers;
+
+    /** Window footprint for each target */
+    protected Footprint[] scores;
+
+    /** Receives the matches */
+    protected MatchHandler matchHandler;
+
+
+    /**
+     * Create a new instance of OnlineSimulate, for the days after the events file.
+     * @param args input arguments, as for runPredictions.
+     * @param eventsFile file with the events, read before the feed adds to it.
+     * @param clustersFile file with the clusters.
+     * @param analysisFile file with the analysis.
+     * @throws Exception any error.
+     */
+    public OnlineSimulate(String[] args, String eventsFile, String clustersFile, String analysisFile)
+            throws Exception {
+
+        super(1);
+
+        int j;
+        EventIndex index;                                   //index of the data rows so far
+        ArrayList<EventCluster> clusters;                   //generated clusters
+
+        try {
+            windowSize = (EqConst.convertToMillisec(args[2]) * Integer.parseInt(args[1]));
+            margin = Float.parseFloat(args[3]);
+            index = ReadData.readEventIndex(eventsFile);
+            clusters = ReadData.readClusters(clustersFile);
+            targets = readTargets(args, index, clusters, analysisFile);
+            firstTime = index.dayTime(index.readDay(0));
+            numDays = index.numDays();
+
+            //the scorers keep the cluster days of the events file, the index is not needed after
+            matcher = new FootprintMatcher(targets.footprints, margin);
+            scorers = new WindowScorer[targets.footprints.length];
+            scores = new Footprint[targets.footprints.length];
+            for (j = 0; j < scorers.length; j++) {
+                if (matcher.hasFootprint(j)) {
+                    scorers[j] = new WindowScorer(targets.am.targetEvents.get(j), index, null);
+                }
+            }
+            matchHandler = this::printMatch;
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Set what receives the matches. They are printed out by default.
+     * @param matchHandler the match handler.
+     */
+    public void setMatchHandler(MatchHandler matchHandler) {
+        this.matchHandler = matchHandler;
+    }
+
+    /**
+     * Run the predictions on a live feed until it ends, adding its rows to the events
+     * files as they are read.
+     * @param feed the live feed, in the same form as the raw dataset file.
+     * @param eventsFile file with the events, as for the constructor.
+     * @param clustersFile file with the clusters, as for the constructor.
+     * @param formatArgs the format arguments the events file was formatted with.
+     * @throws Exception any error.
+     */
+    public void run(InputStream feed, String eventsFile, String clustersFile, String[] formatArgs) throws Exception {
+        ReadData.streamData(feed, eventsFile, clustersFile, formatArgs, this);
+    }
+
+    /**
+     * Add a closed day to the target windows and match them, ending the window at
+     * the day.
+     * @param dateKey the date key of the day.
+     * @param keyTime time in milliseconds of the date key.
+     * @param codes event codes of the day.
+     * @throws Exception any error.
+     */
+    public void closedBucket(String dateKey, long keyTime, long[] codes) throws Exception {
+        int j;                                              //target number
+        long start, end;                                    //start and time range
+        long[] matches;                                     //bitmask of matching targets
+
+        end = keyTime;
+        start = (end - windowSize);
+        if (start < firstTime) start = firstTime;
+
+        for (j = 0; j < scorers.length; j++) {
+            if (scorers[j] != null) {
+                scorers[j].addDay(keyTime, codes);
+                scores[j] = scorers[j].score(start, end);
+                matcher.setCandidate(j, scores[j]);
+            }
+        }
+        matches = matcher.matchCandidates();
+
+        for (j = 0; j < scorers.length; j++) {
+            if (FootprintMatcher.isSet(matches, j)) {
+                matchHandler.match(targetKey(targets.am.targetEvents.get(j), targets.footprints[j]),
+                                   EqConst.toCompoundKey(scores[j].toString(), new Date(end).toString()));
+            }
+        }
+    }
+
+    /**
+     * Match the days that the feed added to the events file all at once, with the same
+     * targets, as Simulate does for the days of an events file. The matches should be
+     * the same as the ones found as the days arrived.
+     * @param eventsFile the events file, with the days the feed added.
+     * @param matchHandler receives the matches, in day and then target order.
+     * @throws Exception any error.
+     */
+    public void replay(String eventsFile, MatchHandler matchHandler) throws Exception {
+        int j;                                              //target number
+        EventIndex index;                                   //index of every day
+        DayMatches dayMatches;                              //the matches
+
+        try {
+            index = ReadData.readEventIndex(eventsFile);
+            dayMatches = simulateDays(numDays, index.numDays(), targets.am, targets.footprints, index,
+                                      windowSize, margin);
+
+            for (int i = 0; i < dayMatches.targets.size(); i++) {
+                j = dayMatches.targets.get(i);
+                matchHandler.match(targetKey(targets.am.targetEvents.get(j), targets.footprints[j]),
+                                   dayMatches.compareKeys.get(i));
+            }
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Print out a match.
+     * @param targetKey the prediction key of the target.
+     * @param compareKey the window footprint and date of the match.
+     */
+    private void printMatch(String targetKey, String compareKey) {
+        System.out.println("Match event: " + targetKey + "   " + compareKey);
+    }
+}
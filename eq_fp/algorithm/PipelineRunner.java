@@ -0,0 +1,218 @@
+/*
+ * PipelineRunner.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.algorithm;
+
+
+import eq_fp.model.AnalysisSnapshot;
+import eq_fp.model.DataRow;
+import eq_fp.model.DatasetManager;
+import eq_fp.model.EventCluster;
+import eq_fp.model.EventFormatter;
+import eq_fp.model.EventIndex;
+import eq_fp.model.FormatState;
+import eq_fp.model.ReadData;
+import eq_fp.util.Pipeline;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+
+/**
+ * Runs the format, analyse and simulate steps for one dataset, with each step passing
+ * what it has made straight to the next, instead of the next step reading the files
+ * back. The raw rows are read, parsed and bucketed as stages of a pipeline, with the
+ * rows parsed on several threads, and the days are scored and their matches added as
+ * two more stages, so the stages of each pipeline run at the same time.
+ * The clusters and the targets are found from every row, so the analysis still starts
+ * once the last row is bucketed, and the predictions once the analysis is finished.
+ * The files are the same as when the steps are run one after the other.
+ */
+public class PipelineRunner {
+
+    /** Number of batches each pipeline queue can hold */
+    protected int queueSize;
+
+    /** Number of raw rows in each batch */
+    protected int batchSize;
+
+    /** Number of threads the parsing, the analysis and the scoring use */
+    protected int numThreads;
+
+    /** Pipeline that read and bucketed the raw rows, in the last run */
+    protected Pipeline formatPipeline;
+
+    /** Pipeline that scored the days, in the last run */
+    protected Pipeline simulatePipeline;
+
+    /** Time in milliseconds of each step, in the last run */
+    protected LinkedHashMap<String, Long> stepTimes;
+
+
+    /** Create a new instance of PipelineRunner, with the default queue and batch sizes */
+    public PipelineRunner() {
+        this(Pipeline.QUEUESIZE, Pipeline.BATCHSIZE);
+    }
+
+    /**
+     * Create a new instance of PipelineRunner.
+     * @param queueSize number of batches each pipeline queue can hold.
+     * @param batchSize number of raw rows in each batch.
+     */
+    public PipelineRunner(int queueSize, int batchSize) {
+        this.queueSize = Math.max(queueSize, 1);
+        this.batchSize = Math.max(batchSize, 1);
+        numThreads = Runtime.getRuntime().availableProcessors();
+        formatPipeline = null;
+        simulatePipeline = null;
+        stepTimes = new LinkedHashMap<>();
+    }
+
+    /**
+     * Set the number of threads the parsing, the analysis and the scoring use.
+     * @param numThreads the number of threads.
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(numThreads, 1);
+    }
+
+    /**
+     * Format the raw dataset, analyse it and run the predictions.
+     * @param trainFile the train dataset.
+     * @param eventsFile file to write the re-formatted data to.
+     * @param clustersFile file to write the clusters to.
+     * @param analysisFile file to save the analysis to.
+     * @param predictFile file to save the predictions to.
+     * @param formatArgs format arguments - number of bands, band size, time separator, time
+     * unit and optionally the clustering engine.
+     * @param testArgs analysis arguments - magnitude threshold, units before, time unit and
+     * accuracy percentage.
+     * @throws Exception any error.
+     */
+    public void run(String trainFile, String eventsFile, String clustersFile, String analysisFile,
+                    String predictFile, String[] formatArgs, String[] testArgs) throws Exception {
+
+        long time;                                          //start time of a step
+        long[] keyTimes;                                    //time of each day
+        ArrayList<Long> dayTimes;                           //time of each day, as it is written
+        ArrayList<String> dateKeys;                         //date key of each day
+        ArrayList<long[]> dayCodes;                         //event codes of each day
+        ArrayList<EventCluster> clusters;                   //generated clusters
+        EventFormatter formatter;                           //to bucket the raw rows
+        EventIndex index;                                   //index of all data rows
+        AnalysisSnapshot snapshot;                          //the analysis
+        Analyse analysis;                                   //to analyse the data
+        Simulate sim;                                       //to predict events
+
+        try {
+            stepTimes.clear();
+
+            //the days are kept as they are written, for the index
+            time = System.currentTimeMillis();
+            dateKeys = new ArrayList<>();
+            dayTimes = new ArrayList<>();
+            dayCodes = new ArrayList<>();
+            formatter = new EventFormatter(eventsFile, formatArgs);
+            formatter.setBucketHandler((dateKey, keyTime, codes) -> {
+                dateKeys.add(dateKey);
+                dayTimes.add(keyTime);
+                dayCodes.add(codes);
+            });
+            try {
+                formatPipeline = formatPipeline(trainFile, formatArgs, formatter);
+                formatPipeline.run();
+            }
+            finally {
+                formatter.close();
+            }
+            stepTimes.put("format", (System.currentTimeMillis() - time));
+
+            time = System.currentTimeMillis();
+            clusters = ReadData.finishFormat(formatter, eventsFile, clustersFile, formatArgs, new FormatState(formatArgs));
+            keyTimes = new long[dayTimes.size()];
+            for (int day = 0; day < keyTimes.length; day++) {
+                keyTimes[day] = dayTimes.get(day);
+            }
+            index = new EventIndex(dateKeys, keyTimes, dayCodes);
+            index.setGridCatalog(formatter.getGridCatalog());
+            stepTimes.put("cluster", (System.currentTimeMillis() - time));
+
+            time = System.currentTimeMillis();
+            analysis = new Analyse(numThreads);
+            snapshot = analysis.analyse(testArgs, index, clusters, analysisFile);
+            stepTimes.put("analyse", (System.currentTimeMillis() - time));
+
+            time = System.currentTimeMillis();
+            sim = new Simulate(numThreads);
+            sim.runPredictions(testArgs, index, clusters, snapshot, predictFile);
+            simulatePipeline = sim.getPipeline();
+            stepTimes.put("simulate", (System.currentTimeMillis() - time));
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Create the pipeline that reads the raw rows, parses them and buckets them. The rows
+     * are copied, as the dataset manager reuses its row, and each parse worker has its
+     * own parser. The parsed rows are passed on in the order they were read.
+     * @param trainFile the train dataset.
+     * @param formatArgs format arguments.
+     * @param formatter to bucket the raw rows.
+     * @return the pipeline.
+     */
+    protected Pipeline formatPipeline(String trainFile, String[] formatArgs, EventFormatter formatter) {
+        Pipeline pipeline;                                  //the pipeline
+        ThreadLocal<EventFormatter.EventParser> parsers;    //parser for each worker
+
+        parsers = ThreadLocal.withInitial(() -> new EventFormatter.EventParser(formatArgs));
+        pipeline = new Pipeline(queueSize);
+        pipeline.setSource("read", batchSize, (Pipeline.Output<DataRow> out) -> {
+            new DatasetManager(trainFile).streamDataset(row -> {
+                out.emit(row.copy());
+                return true;
+            });
+        });
+        pipeline.addStage("parse", numThreads, batchSize,
+                (List<DataRow> rows, Pipeline.Output<EventFormatter.ParsedEvent> out) -> {
+            EventFormatter.EventParser parser = parsers.get();
+            for (DataRow row : rows) {
+                out.emit(parser.parse(row));
+            }
+        });
+        pipeline.addStage("bucket", 1, batchSize,
+                (List<EventFormatter.ParsedEvent> events, Pipeline.Output<Object> out) -> {
+            for (EventFormatter.ParsedEvent event : events) {
+                formatter.addEvent(event);
+            }
+        });
+
+        return pipeline;
+    }
+
+    /**
+     * Return a description of the step times and the pipeline stages of the last run.
+     * @return the times and metrics.
+     */
+    public String toString() {
+        StringBuilder descr;                                //description
+
+        descr = new StringBuilder("Steps:");
+        for (String step : stepTimes.keySet()) {
+            descr.append(" ").append(step).append(" ").append(stepTimes.get(step)).append(" ms");
+        }
+        if (formatPipeline != null) descr.append("\nFormat ").append(formatPipeline);
+        if (simulatePipeline != null) descr.append("\nSimulate ").append(simulatePipeline);
+
+        return descr.toString();
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * ScoreCache.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.algorithm;
+
+
+import eq_fp.model.EventCluster;
+import eq_fp.model.EventIndex;
+import eq_fp.model.Footprint;
+import eq_fp.model.TargetEvent;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * A bounded cache of target scores, keyed by the target event and the time window.
+ * The least recently used score is removed when the cache is full. The cache can be
+ * shared between threads. It pays when several scenarios score the same windows, as
+ * in a parameter sweep, but a single analysis and simulation only repeat a few
+ * scores, so it is not used by default.
+ */
+public class ScoreCache {
+
+    /** Default maximum number of scores to keep */
+    public static final int DEFAULT_SIZE = 200000;
+
+
+    /** Maximum number of scores to keep */
+    protected int maxSize;
+
+    /** Cached scores, in access order */
+    protected LinkedHashMap<ScoreKey, Footprint> scores;
+
+    /** Number of scores found in the cache */
+    protected long hits;
+
+    /** Number of scores not found in the cache */
+    protected long misses;
+
+
+    /**
+     * Create a new instance of ScoreCache with the default size.
+     */
+    public ScoreCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * Create a new instance of ScoreCache.
+     * @param maxSize maximum number of scores to keep.
+     */
+    public ScoreCache(int maxSize) {
+        this.maxSize = maxSize;
+        scores = new LinkedHashMap<ScoreKey, Footprint>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<ScoreKey, Footprint> eldest) {
+                return (size() > ScoreCache.this.maxSize);
+            }
+        };
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Get a cached score.
+     * @param targetEvent the target event that was scored.
+     * @param start start time in milliseconds for the date range.
+     * @param end end time in milliseconds for the date range.
+     * @param index index of the input events.
+     * @return the score, or null if it is not cached.
+     */
+    public synchronized Footprint get(TargetEvent targetEvent, long start, long end, EventIndex index) {
+        Footprint score;                                    //cached score
+
+        score = scores.get(new ScoreKey(targetEvent, start, end, index));
+        if (score != null) hits++;
+        else misses++;
+
+        return score;
+    }
+
+    /**
+     * Add a score to the cache.
+     * @param targetEvent the target event that was scored.
+     * @param start start time in milliseconds for the date range.
+     * @param end end time in milliseconds for the date range.
+     * @param index index of the input events.
+     * @param score the score.
+     */
+    public synchronized void put(TargetEvent targetEvent, long start, long end, EventIndex index,
+                                 Footprint score) {
+        scores.put(new ScoreKey(targetEvent, start, end, index), score);
+    }
+
+    /** Remove all of the cached scores */
+    public synchronized void clear() {
+        scores.clear();
+    }
+
+    /**
+     * Get the number of cached scores.
+     * @return the number of scores.
+     */
+    public synchronized int size() {
+        return scores.size();
+    }
+
+    /**
+     * Get the number of scores found in the cache.
+     * @return the number of hits.
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of scores not found in the cache.
+     * @return the number of misses.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Return a description of the cache use.
+     * @return the description.
+     */
+    public synchronized String toString() {
+        return ("Score cache: size " + scores.size() + ", hits " + hits + ", misses " + misses);
+    }
+
+
+    /**
+     * Key for a score. A score depends on the indexed data, the target event, its date
+     * and cluster, and the time window. The indexed data is told apart by its SHA-256
+     * digest, so a different dataset is not given another one's scores.
+     */
+    protected static class ScoreKey {
+
+        /** Digest of the indexed data */
+        protected byte[] digest;
+
+        /** The target event */
+        protected String event;
+
+        /** Date for the target event */
+        protected String date;
+
+        /** The target cluster */
+        protected EventCluster cluster;
+
+        /** Window start time */
+        protected long start;
+
+        /** Window end time */
+        protected long end;
+
+        /** Hash code */
+        protected int hash;
+
+
+        /**
+         * Create a new instance of ScoreKey.
+         * @param targetEvent the target event.
+         * @param start start time for the window.
+         * @param end end time for the window.
+         * @param index index of the input events.
+         */
+        protected ScoreKey(TargetEvent targetEvent, long start, long end, EventIndex index) {
+            digest = index.getDigest();
+            event = targetEvent.event;
+            date = targetEvent.date;
+            cluster = targetEvent.cluster;
+            this.start = start;
+            this.end = end;
+            hash = Objects.hash(Arrays.hashCode(digest), event, date, start, end);
+        }
+
+        public int hashCode() {
+            return hash;
+        }
+
+        public boolean equals(Object obj) {
+            ScoreKey key;                                   //other key
+
+            if (!(obj instanceof ScoreKey)) return false;
+            key = (ScoreKey) obj;
+
+            return (Arrays.equals(digest, key.digest) && (start == key.start) && (end == key.end)
+                    && Objects.equals(event, key.event) && Objects.equals(date, key.date)
+                    && ((cluster == key.cluster) || ((cluster != null) && cluster.sameMembers(key.cluster))));
+        }
+    }
+}
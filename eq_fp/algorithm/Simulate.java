@@ -13,9 +13,13 @@ package eq_fp.algorithm;
 
 import eq_fp.model.TargetEvent;
 import eq_fp.model.AnalysisModel;
+import eq_fp.model.AnalysisSnapshot;
+import eq_fp.model.EventCluster;
+import eq_fp.model.EventIndex;
+import eq_fp.model.Footprint;
 import eq_fp.model.ReadData;
 import eq_fp.util.EqConst;
-import org.licas.ai_solver.model.result.Cluster;
+import eq_fp.util.Pipeline;
 import org.ai_heuristic.util.SymbolHandler;
 import org.jlog2.util.FileLoader;
 import org.jlog2.util.StringHandler;
@@ -24,12 +28,15 @@ import java.io.FileOutputStream;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.List;
 
 
 /** This class tries to predict what significant event will occur at what time */
 public class Simulate {
 
+    /** Smallest number of days for a parallel chunk */
+    public static final int MINCHUNK = 256;
+
     /**
      * Location of significant events with dates.
      * Key is the event date and value is the related location.
@@ -42,139 +49,316 @@ public class Simulate {
      */
     protected HashMap<String, String> locAnaKey;
 
+    /** Cache of target scores, or null to not cache */
+    protected ScoreCache scoreCache;
+
+    /** Number of threads to process the days with */
+    protected int numThreads;
+
+    /** Pipeline of the last run, with its metrics */
+    protected Pipeline pipeline;
+
 
-    /** Crate a new instance of Simulate */
+    /** Crate a new instance of Simulate, using all of the available processors */
     public Simulate()
     {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a new instance of Simulate.
+     * @param numThreads number of threads to process the days with, 1 to run sequentially.
+     */
+    public Simulate(int numThreads)
+    {
+        this.numThreads = Math.max(numThreads, 1);
         dateLoc = new HashMap<>();
         locAnaKey = new HashMap<>();
+        scoreCache = null;
+        pipeline = null;
     }
 
+    /**
+     * Set the cache for the target scores, which can be shared with an analysis.
+     * @param scoreCache the score cache, or null to not cache.
+     */
+    public void setScoreCache(ScoreCache scoreCache) {
+        this.scoreCache = scoreCache;
+    }
+
+    /**
+     * Get the pipeline of the last run, with the metrics of its stages.
+     * @return the pipeline, or null before the first run.
+     */
+    public Pipeline getPipeline() {
+        return pipeline;
+    }
+
+    /**
+     * Run the predictions over every day of the events.
+     * @param args input arguments.
+     * @param eventsFile file with the events.
+     * @param clustersFile file with the clusters.
+     * @param analysisFile file with the analysis.
+     * @param predictFile file to save the predictions to.
+     * @throws Exception any error.
+     */
     public void runPredictions(String[] args, String eventsFile, String clustersFile, String analysisFile,
-                               String predictFile) {
+                               String predictFile) throws Exception {
+
+        EventIndex index;                                   //index of all data rows
+        ArrayList<EventCluster> clusters;                        //generated clusters
+
+        try {
+            //read the data into structures
+            index = ReadData.readEventIndex(eventsFile);
+            clusters = ReadData.readClusters(clustersFile);
+            predict(args, index, readTargets(args, index, clusters, analysisFile), predictFile);
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Run the predictions over every day of the events, for events, clusters and an
+     * analysis that are already in memory, such as straight after the analysis.
+     * @param args input arguments.
+     * @param index index of all data rows.
+     * @param clusters the clusters.
+     * @param snapshot snapshot of the analysis of the same events and clusters.
+     * @param predictFile file to save the predictions to.
+     * @throws Exception any error.
+     */
+    public void runPredictions(String[] args, EventIndex index, ArrayList<EventCluster> clusters,
+                               AnalysisSnapshot snapshot, String predictFile) throws Exception {
+        try {
+            predict(args, index, snapshotTargets(snapshot, index, clusters), predictFile);
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Run the predictions over every day of the events.
+     * The days are split into chunks that are scored in parallel, as one stage of a
+     * pipeline, while the next stage adds the matches of the chunks that are finished.
+     * Each chunk has its own window scorers and records its matches in day order, and
+     * the chunks are passed on in date order, so the predictions are the same as a
+     * sequential run.
+     * @param args input arguments.
+     * @param index index of all data rows.
+     * @param targets target events and footprints.
+     * @param predictFile file to save the predictions to.
+     * @throws Exception any error.
+     */
+    private void predict(String[] args, EventIndex index, Targets targets, String predictFile) throws Exception {
 
-        int i;
-        int minMag;                                         //minimum magnitude to find
         int unitsBefore;                                    //number time units before
-        long start, end;                                    //start and time range
-        long firstTime;                                     //time for first row
+        int numChunks;                                      //number of day chunks
+        int chunkSize;                                      //days in each chunk
+        long windowSize;                                    //size of the time window
         float margin;                                       //percent error margin either way
         String unitSize;                                    //time unit size
-        String ana1, ana2;                                  //analysis description
-        String targetKey, compareKey;                       //prediction keys
-        String dateKey;                                     //date key
-        String locKey;                                      //location key
-        Object[] keyParts;                                  //key parts
-        ArrayList<String> dateKeys;                         //date keys
-        LinkedHashMap<String, ArrayList<String>> dataRows;  //selected data rows
+        String[] targetKeys;                                //prediction key for each target
+        Footprint[] footprints;                             //analysis footprint for each target
         HashMap<String, ArrayList<String>> matchEvents;     //list of matching sequences
-        ArrayList<Cluster> clusters;                        //generated clusters
         AnalysisModel am;                                   //analysis model
-        TargetScore ts;                                     //to evaluate the events
-        Date date;                                          //date time
 
-        try {
-            minMag = Integer.parseInt(args[0]);
-            unitsBefore = Integer.parseInt(args[1]);
-            unitSize = args[2];
-            margin = Float.parseFloat(args[3]);
-            firstTime = -1;
-            matchEvents = new HashMap<>();
+        unitsBefore = Integer.parseInt(args[1]);
+        unitSize = args[2];
+        margin = Float.parseFloat(args[3]);
+        windowSize = (EqConst.convertToMillisec(unitSize) * unitsBefore);
+        matchEvents = new HashMap<>();
+        am = targets.am;
+        footprints = targets.footprints;
+        targetKeys = new String[am.targetEvents.size()];
+
+        //Tadd each line in turn and set end date to last line
+        // start date is then determined by the time window
+        // for each target cluster evaluate th selected events dor the cluster
+        // if returned key is xx% of actual key, then note the date for the similarity
+
+        //split the days into chunks, with a few chunks for each thread to even out the work
+        numChunks = 1;
+        if ((numThreads > 1) && (index.numDays() > MINCHUNK)) {
+            numChunks = Math.min((numThreads * 4), ((index.numDays() + MINCHUNK - 1) / MINCHUNK));
+        }
+        chunkSize = ((index.numDays() + numChunks - 1) / Math.max(numChunks, 1));
 
-            //read the data into structures
-            dataRows = ReadData.readEvents(eventsFile);
-            clusters = ReadData.readClusters(clustersFile);
-            am = new AnalysisModel(dataRows, clusters, minMag);
+        //each chunk is a batch of its own, so the workers share them out
+        pipeline = new Pipeline();
+        pipeline.setSource("days", 1, (Pipeline.Output<int[]> out) -> {
+            for (int from = 0; from < index.numDays(); from += chunkSize) {
+                out.emit(new int[] {from, Math.min((from + chunkSize), index.numDays())});
+            }
+        });
+        pipeline.addStage("score", numThreads, 1, (List<int[]> chunks, Pipeline.Output<DayMatches> out) -> {
+            for (int[] chunk : chunks) {
+                out.emit(simulateDays(chunk[0], chunk[1], am, footprints, index, windowSize, margin));
+            }
+        });
+
+        //add the matches in date order, the keys are only written out for a match
+        pipeline.addStage("matches", 1, 1, (List<DayMatches> chunkMatches, Pipeline.Output<Object> out) -> {
+            for (DayMatches dayMatches : chunkMatches) {
+                for (int i = 0; i < dayMatches.targets.size(); i++) {
+                    int j = dayMatches.targets.get(i);
+                    if (targetKeys[j] == null) {
+                        targetKeys[j] = targetKey(am.targetEvents.get(j), footprints[j]);
+                    }
+
+                    if (!matchEvents.containsKey(targetKeys[j])) {
+                        matchEvents.put(targetKeys[j], new ArrayList<>());
+                    }
+
+                    matchEvents.get(targetKeys[j]).add(dayMatches.compareKeys.get(i));
+                }
+            }
+        });
+        pipeline.run();
+
+        //output the result
+        printPredictions(matchEvents);
+        writePredictions(matchEvents, predictFile);
+    }
+
+    /**
+     * Read the target events and their analysis footprints. The analysis snapshot has
+     * them if it is for the same data, otherwise the targets are found again and the
+     * footprints are read from the analysis file.
+     * @param args input arguments.
+     * @param index index of all data rows.
+     * @param clusters the clusters.
+     * @param analysisFile file with the analysis.
+     * @return the targets, with a null footprint for a target that was not analysed.
+     * @throws Exception any error.
+     */
+    protected Targets readTargets(String[] args, EventIndex index, ArrayList<EventCluster> clusters,
+                                  String analysisFile) throws Exception {
+
+        int j;
+        String dateKey;                                     //date key
+        String locKey;                                      //location key
+        Targets targets;                                    //the targets
+        AnalysisSnapshot snapshot;                          //analysis snapshot
+
+        snapshot = AnalysisSnapshot.read(analysisFile);
+        if ((snapshot != null) && snapshot.matches(index, clusters, args)) {
+            targets = snapshotTargets(snapshot, index, clusters);
+        }
+        else {
+            targets = new Targets();
+            targets.am = new AnalysisModel(index, clusters, Integer.parseInt(args[0]));
             readAnalysisFile(analysisFile);
-            ts = new TargetScore();
-
-            //Tadd each line in turn and set end date to last line
-            // start date is then determined by the time window
-            // for each target cluster evaluate th selected events dor the cluster
-            // if returned key is xx% of actual key, then note the date for the similarity
-
-            //process cumulatively through the event rows and try to compare with significant events
-            dateKeys = new ArrayList(dataRows.keySet());
-            for (i = 0; i < dateKeys.size(); i++) {
-                dateKey = dateKeys.get(i);
-                date = new Date(dateKey);
-
-                end = date.getTime();
-                if (i == 0) {
-                    firstTime = end;
+            targets.footprints = new Footprint[targets.am.targetEvents.size()];
+            for (j = 0; j < targets.footprints.length; j++) {
+                dateKey = targets.am.targetEvents.get(j).date;
+                locKey = dateLoc.get(dateKey);
+                if (locAnaKey.get(locKey) != null) {
+                    targets.footprints[j] = Footprint.fromString(locAnaKey.get(locKey), locKey);
                 }
+            }
+        }
 
-                start = (end - (EqConst.convertToMillisec(unitSize) * unitsBefore));
-                if (start < firstTime) start = firstTime;
+        return targets;
+    }
 
-                for (TargetEvent targetEvent : am.targetEvents) {
-                    dateKey = targetEvent.date;
-                    locKey = dateLoc.get(dateKey);
-                    ana1 = locAnaKey.get(locKey);
+    /**
+     * Get the target events and their analysis footprints from an analysis snapshot.
+     * @param snapshot the analysis snapshot.
+     * @param index index of the same events.
+     * @param clusters the same clusters.
+     * @return the targets.
+     */
+    protected static Targets snapshotTargets(AnalysisSnapshot snapshot, EventIndex index,
+                                             ArrayList<EventCluster> clusters) {
+        Targets targets;                                    //the targets
+
+        targets = new Targets();
+        targets.am = new AnalysisModel(snapshot.getTargetEvents(index, clusters));
+        targets.footprints = new Footprint[snapshot.numTargets()];
+        for (int j = 0; j < targets.footprints.length; j++) {
+            targets.footprints[j] = snapshot.getFootprint(j);
+        }
 
-                    targetKey = EqConst.toCompoundKey(targetEvent.event, targetEvent.date);
-                    targetKey = EqConst.toCompoundKey(ana1, targetKey);
-                    keyParts = EqConst.fromEventKey(ana1);
+        return targets;
+    }
 
-                    if (((int)keyParts[0]) > 0) {
-                        ana2 = EqConst.fromCompoundKey(ts.targetScore(targetEvent, start, end, dataRows))[0];
+    /**
+     * Get the prediction key of a target, which the matches are listed under.
+     * @param targetEvent the target event.
+     * @param footprint the analysis footprint of the target.
+     * @return the prediction key.
+     */
+    protected static String targetKey(TargetEvent targetEvent, Footprint footprint) {
+        return EqConst.toCompoundKey(footprint.toString(), EqConst.toCompoundKey(targetEvent.event, targetEvent.date));
+    }
 
-                        if (analysisMatch(ana1, ana2, margin)) {
-                            compareKey = EqConst.toCompoundKey(ana2, date.toString());
+    /**
+     * Compare the target footprints with the events for a range of days.
+     * The days are walked in the order they were read, so while the window moves
+     * forward each target keeps a sliding window score, and every target is then
+     * matched against its score together.
+     * @param from position of the first day to process, in the order the days were read.
+     * @param to position after the last day to process.
+     * @param am analysis model with the target events.
+     * @param footprints analysis footprint for each target.
+     * @param index index of all data rows.
+     * @param windowSize size of the time window in milliseconds.
+     * @param margin percent error margin either way.
+     * @return the matches, in day and then target order.
+     */
+    protected DayMatches simulateDays(int from, int to, AnalysisModel am, Footprint[] footprints, EventIndex index,
+                                      long windowSize, float margin) {
+
+        int i, j;
+        long start, end;                                    //start and time range
+        long firstTime;                                     //time for first row
+        long[] matches;                                     //bitmask of matching targets
+        String compareKey;                                  //prediction key
+        Footprint[] scores;                                 //window footprint for each target
+        FootprintMatcher matcher;                           //matches the window footprints
+        WindowScorer[] scorers;                             //to evaluate the events for each target
+        DayMatches dayMatches;                              //the matches
+        Date date;                                          //date time
+
+        scorers = new WindowScorer[am.targetEvents.size()];
+        scores = new Footprint[am.targetEvents.size()];
+        matcher = new FootprintMatcher(footprints, margin);
+        dayMatches = new DayMatches();
+        firstTime = index.dayTime(index.readDay(0));
 
-                            if (!matchEvents.containsKey(targetKey)) {
-                                matchEvents.put(targetKey, new ArrayList<>());
-                            }
+        //process cumulatively through the event days in file order and try to compare with significant events
+        for (i = from; i < to; i++) {
+            end = index.dayTime(index.readDay(i));
+            date = new Date(end);
 
-                            matchEvents.get(targetKey).add(compareKey);
-                        }
+            start = (end - windowSize);
+            if (start < firstTime) start = firstTime;
+
+            for (j = 0; j < am.targetEvents.size(); j++) {
+                if (matcher.hasFootprint(j)) {
+                    if (scorers[j] == null) {
+                        scorers[j] = new WindowScorer(am.targetEvents.get(j), index, scoreCache);
                     }
+                    scores[j] = scorers[j].score(start, end);
+                    matcher.setCandidate(j, scores[j]);
                 }
             }
+            matches = matcher.matchCandidates();
 
-            //output the result
-            printPredictions(matchEvents);
-            writePredictions(matchEvents, predictFile);
-        }
-        catch (Exception ex) {
-            ex.printStackTrace();
-        }
-    }
-
-    private boolean analysisMatch(String an1, String an2, float margin) {
-        float fVal1, fVal2;                     //float values
-        float error;                            //error size
-        float diff;                             //difference in the values
-        Object[] el1, el2;                      //event lists
-
-        //all parts must be inside the margin of error individually for a match
-        el1 = EqConst.fromEventKey(an1);
-        el2 = EqConst.fromEventKey(an2);
-
-        fVal1 = Float.parseFloat(String.valueOf(el1[0]));
-        fVal2 = Float.parseFloat(String.valueOf(el2[0]));
-        error = (fVal1 / 100.0f * margin);
-        diff = Math.abs(fVal1 - fVal2);
-
-        if (diff <= error) {
-            fVal1 = Float.parseFloat(String.valueOf(el1[1]));
-            fVal2 = Float.parseFloat(String.valueOf(el2[1]));
-            error = (fVal1 / 100.0f * margin);
-            diff = Math.abs(fVal1 - fVal2);
-
-            if (diff <= error) {
-                fVal1 = Float.parseFloat(String.valueOf(el1[2]));
-                fVal2 = Float.parseFloat(String.valueOf(el2[2]));
-                error = (fVal1 / 100.0f * margin);
-                diff = Math.abs(fVal1 - fVal2);
-
-                if (diff <= error) {
-                    return true;
+            for (j = 0; j < am.targetEvents.size(); j++) {
+                if (FootprintMatcher.isSet(matches, j)) {
+                    compareKey = EqConst.toCompoundKey(scores[j].toString(), date.toString());
+                    dayMatches.targets.add(j);
+                    dayMatches.compareKeys.add(compareKey);
                 }
             }
         }
 
-        return false;
+        return dayMatches;
     }
 
     /**
@@ -266,4 +450,33 @@ public class Simulate {
 
         writer.close();
     }
+
+
+    /** The target events, with the analysis footprint of each one */
+    protected static class Targets {
+
+        /** Analysis model with the target events */
+        protected AnalysisModel am;
+
+        /** Analysis footprint for each target */
+        protected Footprint[] footprints;
+    }
+
+
+    /** The matches for a range of days, in the order they were found */
+    protected static class DayMatches {
+
+        /** Target number of each match */
+        protected ArrayList<Integer> targets;
+
+        /** Window footprint and date of each match */
+        protected ArrayList<String> compareKeys;
+
+
+        /** Create a new instance of DayMatches */
+        protected DayMatches() {
+            targets = new ArrayList<>();
+            compareKeys = new ArrayList<>();
+        }
+    }
 }
@@ -0,0 +1,349 @@
+/*
+ * SweepRunner.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.algorithm;
+
+
+import eq_fp.model.AnalysisSnapshot;
+import eq_fp.model.ColumnarDataset;
+import eq_fp.model.DatasetManager;
+import eq_fp.model.EventCluster;
+import eq_fp.model.EventIndex;
+import eq_fp.model.ReadData;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+
+/**
+ * Runs the format, analyse and simulate pipeline for a set of parameter scenarios.
+ * The raw dataset is read by column once and shared by every scenario. Each scenario
+ * runs as its own task, on virtual threads if the JVM has them and otherwise on a
+ * fixed pool. The events and clusters files are only created once for each set of
+ * format parameters, and the analysis once for each set of analysis parameters, by
+ * the first scenario that needs them, with the other scenarios waiting for them. The
+ * events index, clusters and analysis are then kept in memory and shared as well, so
+ * each scenario only runs its simulation. A scenario that fails is reported by run.
+ */
+public class SweepRunner {
+
+    /** The train dataset */
+    protected String trainFile;
+
+    /** Directory to write the files to */
+    protected String outputDir;
+
+    /** Name the files start with */
+    protected String filePrefix;
+
+    /** Number of threads when there are no virtual threads */
+    protected int numThreads;
+
+    /** Number of threads each analysis and simulation uses */
+    protected int innerThreads;
+
+    /** Cache of target scores shared by every scenario, or null to not cache */
+    protected ScoreCache scoreCache;
+
+    /** The scenarios to run */
+    protected ArrayList<Scenario> scenarios;
+
+    /** The train dataset columns, once they are read */
+    protected ColumnarDataset dataset;
+
+    /** Formatted events and clusters for each set of format parameters */
+    protected ConcurrentHashMap<String, Future<FormatData>> formats;
+
+    /** Analysis for each set of format and analysis parameters */
+    protected ConcurrentHashMap<String, Future<AnalysisSnapshot>> analyses;
+
+
+    /**
+     * Create a new instance of SweepRunner.
+     * @param trainFile the train dataset.
+     * @param outputDir directory to write the files to.
+     * @param filePrefix name the files start with.
+     */
+    public SweepRunner(String trainFile, String outputDir, String filePrefix) {
+        this.trainFile = trainFile;
+        this.outputDir = outputDir;
+        this.filePrefix = filePrefix;
+        numThreads = Runtime.getRuntime().availableProcessors();
+        innerThreads = 1;
+        scoreCache = null;
+        scenarios = new ArrayList<>();
+        formats = new ConcurrentHashMap<>();
+        analyses = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Set the number of threads to run the scenarios with, if there are no virtual threads.
+     * @param numThreads the number of threads.
+     */
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(numThreads, 1);
+    }
+
+    /**
+     * Set the number of threads each analysis and simulation uses. The scenarios
+     * already run in parallel, so the default is 1.
+     * @param innerThreads the number of threads.
+     */
+    public void setInnerThreads(int innerThreads) {
+        this.innerThreads = Math.max(innerThreads, 1);
+    }
+
+    /**
+     * Set the cache for the target scores, which is shared by every scenario.
+     * @param scoreCache the score cache, or null to not cache.
+     */
+    public void setScoreCache(ScoreCache scoreCache) {
+        this.scoreCache = scoreCache;
+    }
+
+    /**
+     * Add a scenario.
+     * @param formatArgs format arguments - number of bands, band size, time separator and time unit.
+     * @param testArgs analysis arguments - magnitude threshold, units before, time unit and accuracy percentage.
+     */
+    public void addScenario(String[] formatArgs, String[] testArgs) {
+        scenarios.add(new Scenario(formatArgs.clone(), testArgs.clone()));
+    }
+
+    /**
+     * Add a scenario for every combination of the parameter values.
+     * @param bands number of bands values.
+     * @param bandSizes band size values.
+     * @param timeSep time separator in the data file.
+     * @param timeUnit time unit.
+     * @param magnitudes magnitude threshold values.
+     * @param unitsBefore number of units before values.
+     * @param margins accuracy percentage values.
+     */
+    public void addGrid(String[] bands, String[] bandSizes, String timeSep, String timeUnit,
+                        String[] magnitudes, String[] unitsBefore, String[] margins) {
+        for (String numBands : bands) {
+            for (String bandSize : bandSizes) {
+                for (String magnitude : magnitudes) {
+                    for (String before : unitsBefore) {
+                        for (String margin : margins) {
+                            addScenario(new String[] {numBands, bandSize, timeSep, timeUnit},
+                                    new String[] {magnitude, before, timeUnit, margin});
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the number of scenarios.
+     * @return the number of scenarios.
+     */
+    public int numScenarios() {
+        return scenarios.size();
+    }
+
+    /**
+     * Run every scenario.
+     * @return the predictions file of each scenario, in the order they were added.
+     * @throws Exception the first error from a scenario, after they have all finished.
+     */
+    public ArrayList<String> run() throws Exception {
+        ArrayList<Callable<String>> tasks;                  //task for each scenario
+        List<Future<String>> results;                       //predictions file for each scenario
+        ArrayList<String> predictFiles;                     //predictions files
+        ExecutorService executor;                           //to run the scenarios
+
+        try {
+            if (dataset == null) {
+                dataset = new DatasetManager(trainFile).createColumnarDataset();
+            }
+
+            tasks = new ArrayList<>();
+            for (Scenario scenario : scenarios) {
+                tasks.add(() -> runScenario(scenario));
+            }
+
+            executor = newExecutor();
+            try {
+                results = executor.invokeAll(tasks);
+            }
+            finally {
+                executor.shutdown();
+            }
+
+            predictFiles = new ArrayList<>();
+            for (Future<String> result : results) {
+                predictFiles.add(getResult(result));
+            }
+
+            return predictFiles;
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Create the executor for the scenarios - one virtual thread for each task if the
+     * JVM has them, otherwise a fixed pool.
+     * @return the executor.
+     */
+    protected ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (Exception ex) {
+            return Executors.newFixedThreadPool(numThreads);
+        }
+    }
+
+    /**
+     * Run the pipeline for one scenario.
+     * @param scenario the scenario.
+     * @return the predictions file.
+     * @throws Exception any error.
+     */
+    protected String runScenario(Scenario scenario) throws Exception {
+        String formatName;                                  //name for the format parameters
+        String analysisName;                                //name for the analysis parameters
+        String predictFile;                                 //predictions file
+        FormatData formatted;                               //events and clusters
+        AnalysisSnapshot snapshot;                          //the analysis
+        Simulate sim;                                       //to predict events
+
+        formatName = (filePrefix + "_" + toName(scenario.formatArgs));
+        analysisName = (formatName + "_" + toName(Arrays.copyOf(scenario.testArgs, 3)));
+        predictFile = (outputDir + File.separator + analysisName + "_" + toName(scenario.testArgs[3]) + "_predict.txt");
+
+        formatted = getOnce(formats, formatName, () -> {
+            String eventsFile = (outputDir + File.separator + formatName + "_events.txt");
+            String clustersFile = (outputDir + File.separator + formatName + "_clusters.txt");
+            ReadData.formatData(dataset, eventsFile, clustersFile, scenario.formatArgs);
+            return new FormatData(ReadData.readEventIndex(eventsFile), ReadData.readClusters(clustersFile));
+        });
+
+        snapshot = getOnce(analyses, analysisName, () -> {
+            String file = (outputDir + File.separator + analysisName + "_analysis.txt");
+            Analyse analysis = new Analyse(innerThreads);
+            analysis.setScoreCache(scoreCache);
+            return analysis.analyse(scenario.testArgs, formatted.index, formatted.clusters, file);
+        });
+
+        sim = new Simulate(innerThreads);
+        sim.setScoreCache(scoreCache);
+        sim.runPredictions(scenario.testArgs, formatted.index, formatted.clusters, snapshot, predictFile);
+
+        return predictFile;
+    }
+
+    /**
+     * Get a value that is only created once for a key. The first caller creates it,
+     * and any other caller waits for it.
+     * @param values the values created so far.
+     * @param key the key.
+     * @param creator to create the value.
+     * @return the value.
+     * @throws Exception any error creating the value.
+     */
+    private static <T> T getOnce(ConcurrentHashMap<String, Future<T>> values, String key,
+                                 Callable<T> creator) throws Exception {
+        FutureTask<T> task;                                 //to create the value
+        Future<T> value;                                    //the value
+
+        task = new FutureTask<>(creator);
+        value = values.putIfAbsent(key, task);
+        if (value == null) {
+            value = task;
+            task.run();
+        }
+
+        return getResult(value);
+    }
+
+    /**
+     * Get the result of a task, with the error it threw.
+     * @param result the task result.
+     * @return the value.
+     * @throws Exception the error from the task.
+     */
+    private static <T> T getResult(Future<T> result) throws Exception {
+        try {
+            return result.get();
+        }
+        catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception) throw (Exception) ex.getCause();
+            throw ex;
+        }
+    }
+
+    /**
+     * Create a file name part from argument values.
+     * @param args the argument values.
+     * @return the name part, with any character that is not a letter, digit or point replaced.
+     */
+    private static String toName(String... args) {
+        return String.join("-", args).replaceAll("[^A-Za-z0-9.]", "-");
+    }
+
+
+    /** The events index and clusters of a set of format parameters, shared by its scenarios */
+    protected static class FormatData {
+
+        /** Index of the events */
+        protected EventIndex index;
+
+        /** The clusters */
+        protected ArrayList<EventCluster> clusters;
+
+
+        /**
+         * Create a new instance of FormatData.
+         * @param index index of the events.
+         * @param clusters the clusters.
+         */
+        protected FormatData(EventIndex index, ArrayList<EventCluster> clusters) {
+            this.index = index;
+            this.clusters = clusters;
+        }
+    }
+
+
+    /** A set of format and analysis arguments to run the pipeline with */
+    protected static class Scenario {
+
+        /** Format arguments */
+        protected String[] formatArgs;
+
+        /** Analysis and simulation arguments */
+        protected String[] testArgs;
+
+
+        /**
+         * Create a new instance of Scenario.
+         * @param formatArgs format arguments.
+         * @param testArgs analysis and simulation arguments.
+         */
+        protected Scenario(String[] formatArgs, String[] testArgs) {
+            this.formatArgs = formatArgs;
+            this.testArgs = testArgs;
+        }
+    }
+}
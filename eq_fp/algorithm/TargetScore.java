@@ -11,11 +11,12 @@
 package eq_fp.algorithm;
 
 
+import eq_fp.model.EventCluster;
+import eq_fp.model.EventIndex;
+import eq_fp.model.EventSet;
+import eq_fp.model.Footprint;
 import eq_fp.model.TargetEvent;
-import eq_fp.util.DataConst;
 import eq_fp.util.EqConst;
-import org.licas.ai_solver.model.result.Cluster;
-import org.jlog2.util.StringHandler;
 
 import java.util.*;
 
@@ -23,151 +24,130 @@ import java.util.*;
 /** Generates a score for data events in a time window, against the target cluster */
 public class TargetScore {
 
+    /** Cache of scores already generated, or null to not cache */
+    protected ScoreCache scoreCache;
+
+
     /**
      * Create a new instance of TargetScore.
      */
     public TargetScore()
-    {}
+    {
+        scoreCache = null;
+    }
+
+    /**
+     * Set the cache for the scores.
+     * @param scoreCache the score cache, or null to not cache.
+     */
+    public void setScoreCache(ScoreCache scoreCache) {
+        this.scoreCache = scoreCache;
+    }
+
+    /**
+     * Compare the patterns for changes, using the score cache if there is one.
+     * @param targetEvent the event set to analyse.
+     * @param start start time in milliseconds for the date range.
+     * @param end end time in milliseconds for the date range.
+     * @param index index of the input events.
+     * @return footprint of the events before the target event.
+     */
+    public Footprint targetScore(TargetEvent targetEvent, long start, long end, EventIndex index) {
+        Footprint score;                                            //the score
+
+        if (scoreCache == null) {
+            return computeScore(targetEvent, start, end, index);
+        }
+
+        score = scoreCache.get(targetEvent, start, end, index);
+        if (score == null) {
+            score = computeScore(targetEvent, start, end, index);
+            scoreCache.put(targetEvent, start, end, index, score);
+        }
+
+        return score;
+    }
 
     /**
      * Compare the patterns for changes.
      * @param targetEvent the event set to analyse.
      * @param start start time in milliseconds for the date range.
      * @param end end time in milliseconds for the date range.
-     * @param dataRows input events.
-     * @return comparison description - key description.
+     * @param index index of the input events.
+     * @return footprint of the events before the target event.
      */
-    public String targetScore(TargetEvent targetEvent, long start, long end,
-                              HashMap<String, ArrayList<String>> dataRows) {
+    private Footprint computeScore(TargetEvent targetEvent, long start, long end, EventIndex index) {
 
         int i;
         int count;                                                  //count of something
-        double cohCount;                                            //cohesion count
+        int countSum;                                               //sum of the matching event counts
+        int cohSum;                                                 //number of continuous day gaps
+        int numRuns;                                                //number of continuous runs
+        int targetDay;                                              //day of the target event
+        int fromDay, toDay;                                         //day range for the times
+        double gapSum;                                              //sum of the day gaps
         double diff;                                                //difference
-        String nextKey;                                             //next key
-        ArrayList<Long> tsOrdered;                                  //ordered timestamps
-        ArrayList<Double> tsDiff;                                   //timestamp differences
-        ArrayList<Double> tsCoh;                                    //timestamp cohesions
-        ArrayList<String> eventKeys;                                //event date keys
-        ArrayList<String> sigEvents;                                //sig event coords only
-        ArrayList<String> sigEventsCoords;                          //sig event coords only
-        ArrayList<String> eventList, eventList2;                    //list of events
-        HashMap<String, Integer> eventCount;                        //count of matching events key magnitude
-        HashMap<String, Integer> eventCountCoord;                   //count of matching events coords only
-        HashMap<String, ArrayList<Double>> eventMag;                //list of magnitudes for each event key
-        LinkedHashMap<Long, String> dateHash;                       //dates with timestamps
-        LinkedHashMap<String, ArrayList<String>> events;            //all related events key magnitude
-        LinkedHashMap<String, ArrayList<String>> eventCoords;       //all related events coords only
-        Date date;                                                  //time date
-        Cluster targetCluster;                                      //the target cluster
+        boolean inRun;                                              //previous gap was continuous
+        int[] clusterDays;                                          //days with a cluster event
+        EventSet sigEvents;                                         //sig event ids
+        EventCluster targetCluster;                                 //the target cluster
 
         try {
             //get list of events clustered with the global significant one
             targetCluster = targetEvent.cluster;
-            sigEvents = targetEvent.dataRow;
-            sigEventsCoords = eventCoords(targetEvent.dataRow);
-            events = new LinkedHashMap<>();
-            eventCoords = new LinkedHashMap<>();
+            targetDay = (targetEvent.day >= 0) ? targetEvent.day : index.dayNumber(targetEvent.date);
+            sigEvents = index.daySet(targetDay);
 
-            //get date and input events for significant event and other related events
+            //get the days in the date range for significant event and other related events
             //so all events that might be related to the significant one
+            //the target event is not included if it is present in the rows
+            fromDay = index.firstDay(start);
+            toDay = index.endDay(end);
             if (targetCluster != null) {
-                for (String datestr : dataRows.keySet()) {
-                    for (Object obj : targetCluster.list) {
-                        nextKey = (String) obj;
-                        if (dataRows.get(datestr).contains(nextKey)) {
-                            events.put(datestr, dataRows.get(datestr));
-                            eventCoords.put(datestr, eventCoords(dataRows.get(datestr)));
-                            break;
-                        }
-                    }
-                }
+                clusterDays = index.clusterDays(targetCluster, fromDay, toDay);
+            }
+            else {
+                clusterDays = new int[0];
             }
 
-            //remove the target event first if it is present in the rows
-            events.remove(targetEvent.date);
-            eventCoords.remove(targetEvent.date);
-
-            //get lists of events for dates before significant date
-            eventKeys = new ArrayList(events.keySet());
-            for (String dateKey : eventKeys) {
-                date = new Date(dateKey);
-
-                if ((date.getTime() < start) || (date.getTime() > end)) {
-                    events.remove(dateKey);
-                    eventCoords.remove(dateKey);
-                }
+            i = Arrays.binarySearch(clusterDays, targetDay);
+            if (i >= 0) {
+                System.arraycopy(clusterDays, i + 1, clusterDays, i, clusterDays.length - i - 1);
+                clusterDays = Arrays.copyOf(clusterDays, clusterDays.length - 1);
             }
 
             //get count of number of occurrences of key
-            // for the global cluster keys every day before for x days
-            eventCount = new HashMap<>();
-            eventCountCoord = new HashMap<>();
-            eventMag = new HashMap<>();
-            dateHash = new LinkedHashMap<>();
-
-            eventKeys = new ArrayList(events.keySet());
-            for (String dateKey : eventKeys) {
-                eventList = events.get(dateKey);
-                eventList2 = eventCoords.get(dateKey);
-                dateHash.put((new Date(dateKey)).getTime(), dateKey);
-
-                count = 0;
-                for (String key : eventList) {
-                    if (sigEvents.contains(key)) count++;
-                }
-                eventCount.put(dateKey, count);
-
-                count = 0;
-                for (String key : eventList2) {
-                    if (sigEventsCoords.contains(key)) count++;
-                }
-                eventCountCoord.put(dateKey, count);
-
-                if (!eventMag.containsKey(dateKey)) {
-                    eventMag.put(dateKey, new ArrayList<>());
-                }
-                for (String key : eventList) {
-                    eventMag.get(dateKey).add(Double.parseDouble(DataConst.fromDataKey(key).get(2)));
-                }
+            // for the global cluster keys every day in the date range
+            countSum = 0;
+            for (int day : clusterDays) {
+                count = index.matchCount(day, sigEvents);
+                countSum += count;
             }
 
-            tsOrdered = new ArrayList(dateHash.keySet());
-            Collections.sort(tsOrdered);
-            Collections.reverse(tsOrdered);
-
             //test if the time between significant days changes
-            //reverse again so can start from earliest date, not closest one
-            Collections.reverse(tsOrdered);
-            tsDiff = new ArrayList<>();
-            tsCoh = new ArrayList<>();
-
-            cohCount = 0;
-            for (i = 1; i < tsOrdered.size(); i++) {
-                diff = (tsOrdered.get(i) - tsOrdered.get(i - 1));
-                diff /= EqConst.convertFromMillisec(EqConst.DAY);
-                tsDiff.add(diff);
+            //days are in time order, so start from earliest date, not closest one
+            //a run of gaps of 1 day or less is a cohesion
+            //the gaps add up to the time from the first to the last day, measured in milliseconds
+            gapSum = (clusterDays.length > 1)
+                    ? dayGap(index.dayTime(clusterDays[0]), index.dayTime(clusterDays[clusterDays.length - 1])) : 0;
+            cohSum = 0;
+            numRuns = 0;
+            inRun = false;
+            for (i = 1; i < clusterDays.length; i++) {
+                diff = dayGap(index.dayTime(clusterDays[i - 1]), index.dayTime(clusterDays[i]));
 
                 if (diff > 1) {
-                    if (cohCount > 0) {
-                        tsCoh.add(cohCount);
-                        cohCount = 0;
-                    }
+                    inRun = false;
                 }
                 else {
-                    cohCount++;
+                    if (!inRun) numRuns++;
+                    inRun = true;
+                    cohSum++;
                 }
             }
-            if (cohCount > 0) {
-                tsCoh.add(cohCount);
-            }
-
-            //for testing
-            //System.out.println("Day gaps: " + tsDiff);
-            //System.out.println("Day cohesions: " + tsCoh);
 
             //generate a result description
-            return EqConst.toCompoundKey(tsDescription(tsDiff, tsCoh, eventCount, eventMag), targetEvent.event);
+            return tsFootprint(clusterDays.length, gapSum, countSum, cohSum, numRuns, targetEvent.event);
         }
         catch (Exception ex) {
             throw ex;
@@ -175,83 +155,48 @@ public class TargetScore {
     }
 
     /**
-     * Generate a description of the timestamps representing event days.
-     * @param tsDiff list of day gaps.
-     * @param tsCoh list of continuous days.
-     * @param eventCount number of relevant events each day.
-     * @param eventMag list of magnitudes for each event key.
-     * @return analysis description of the list.
+     * Get the gap in days between two days. The difference is taken in whole milliseconds
+     * first, so a sum of gaps can be found exactly from its first and last day, even when
+     * a day is not 24 hours long, such as at a clock change.
+     * @param time1 time of the earlier day in milliseconds.
+     * @param time2 time of the later day in milliseconds.
+     * @return the gap in days.
      */
-    private String tsDescription(ArrayList<Double> tsDiff, ArrayList<Double> tsCoh,
-                                 HashMap<String, Integer> eventCount,
-                                 HashMap<String, ArrayList<Double>> eventMag) {
-        int avEvCount;                          //average event count
-        float magValue;                         //magnitude value
-        double avGap;                           //average gap size in days
-        double avCoh;                           //average cohesion size in days
-        double avMag;                           //average magnitude
-        double coh;                             //possible cohesion value
-        ArrayList<Double> magAverages;          //average magnitude each day
-
-        avEvCount = 0;
-        if (!eventCount.isEmpty()) {
-            for (String key : eventCount.keySet()) {
-                avEvCount += eventCount.get(key);
-            }
-            avEvCount /= eventCount.size();
-        }
+    static double dayGap(long time1, long time2) {
+        double diff;                            //difference
 
-        //day gaps and cohesion were helpful
-        //magnitude was not helpful
-        magAverages = new ArrayList<>();
-        for (String key : eventMag.keySet()) {
-            coh = EqConst.cohesion(eventMag.get(key), eventMag.get(key).size());
-            magAverages.add(coh / eventMag.get(key).size());
-        }
-
-        avGap = 0;
-        avMag = 0;
-        coh = 0;
-        if (!tsDiff.isEmpty()) {
-            //not very good - less accurate
-            //coh = EqConst.cohesion(magAverages, magAverages.size());
-
-            for (double tsValue : tsDiff) {
-                avGap += tsValue;
-            }
-            avGap /= tsDiff.size();
-        }
-
-        avCoh = 0;
-        if (!tsCoh.isEmpty()) {
-            for (double tsValue : tsCoh) {
-                avCoh += tsValue;
-            }
-            avCoh /= tsCoh.size();
-        }
+        diff = (time2 - time1);
+        diff /= EqConst.convertFromMillisec(EqConst.DAY);
 
-        //return EqConst.toEventKey(tsDiff.size(), avGap, avEvCount);
-        return EqConst.toEventKey(tsDiff.size(), avGap, avEvCount, avCoh);
+        return diff;
     }
 
     /**
-     * Parse the full event string to return the coords or location part only.
-     * @param eventList list of events with full keys for each entry.
-     * @return same list with only coords for the keys.
+     * Generate the footprint of the timestamps representing event days.
+     * @param numDays number of event days.
+     * @param gapSum sum of the day gaps.
+     * @param countSum sum of the relevant events each day.
+     * @param cohSum number of continuous day gaps.
+     * @param numRuns number of runs of continuous days.
+     * @param event the target event.
+     * @return analysis footprint of the days.
      */
-    private ArrayList<String> eventCoords(ArrayList<String> eventList) {
-        String valueStr;
-        ArrayList<String> tokens;
-        ArrayList<String> eventList2;
+    static Footprint tsFootprint(int numDays, double gapSum, int countSum, int cohSum, int numRuns,
+                                 String event) {
+        int numGaps;                            //number of day gaps
+        int avEvCount;                          //average event count
+        double avGap;                           //average gap size in days
+        double avCoh;                           //average cohesion size in days
 
-        eventList2 = new ArrayList<>();
+        numGaps = Math.max(numDays - 1, 0);
+        avEvCount = (numDays > 0) ? (countSum / numDays) : 0;
 
-        for (String eventStr : eventList) {
-            tokens = StringHandler.tokenize(eventStr, DataConst.KEYSEP, false);
-            valueStr = (tokens.get(0) + DataConst.KEYSEP + tokens.get(1));
-            if (!eventList2.contains(valueStr)) eventList2.add(valueStr);
-        }
+        //day gaps and cohesion were helpful
+        //magnitude was not helpful, so is not measured any more
+        avGap = (numGaps > 0) ? (gapSum / numGaps) : 0;
+        avCoh = (numRuns > 0) ? ((double) cohSum / numRuns) : 0;
 
-        return eventList2;
+        //return EqConst.toEventKey(numGaps, avGap, avEvCount);
+        return new Footprint(numGaps, avGap, avEvCount, avCoh, event);
     }
 }
@@ -0,0 +1,275 @@
+/*
+ * WindowScorer.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.algorithm;
+
+
+import eq_fp.model.EventIndex;
+import eq_fp.model.EventSet;
+import eq_fp.model.Footprint;
+import eq_fp.model.TargetEvent;
+
+import java.util.Arrays;
+
+
+/**
+ * Scores a target event over a sliding time window. The same footprint as
+ * TargetScore is produced, but the count and cohesion totals are kept as days
+ * enter and leave the window, so moving the window forward by one day only costs
+ * the days that are added or removed. The day gaps add up to the time from the first
+ * to the last day in the window, which is measured in whole milliseconds the same
+ * way as TargetScore, so the scores are identical. Days after the index, such as
+ * from a live feed, can be added as they arrive.
+ */
+public class WindowScorer {
+
+    /** The target event to score for */
+    protected TargetEvent targetEvent;
+
+    /** The event index */
+    protected EventIndex index;
+
+    /** Cache of scores already generated, or null to not cache */
+    protected ScoreCache scoreCache;
+
+    /** Day number of the target event */
+    protected int targetDay;
+
+    /** Times of the days with an event from the target cluster, without the target day */
+    protected long[] clusterTimes;
+
+    /** Count of events matching the target day, for each cluster day */
+    protected int[] dayCounts;
+
+    /** Number of cluster days */
+    protected int numDays;
+
+    /** Sorted event codes of the target day, once a day has been added */
+    protected long[] sigCodes;
+
+    /** Position of the first day in the window */
+    protected int head;
+
+    /** Position after the last day in the window */
+    protected int tail;
+
+    /** Current window start time */
+    protected long winStart;
+
+    /** Current window end time */
+    protected long winEnd;
+
+    /** Sum of the matching event counts */
+    protected int countSum;
+
+    /** Number of day gaps of 1 or less */
+    protected int cohSum;
+
+    /** Number of continuous runs of day gaps of 1 or less */
+    protected int numRuns;
+
+
+    /**
+     * Create a new instance of WindowScorer.
+     * @param targetEvent the target event to score for.
+     * @param index the event index.
+     */
+    public WindowScorer(TargetEvent targetEvent, EventIndex index) {
+        this(targetEvent, index, null);
+    }
+
+    /**
+     * Create a new instance of WindowScorer.
+     * @param targetEvent the target event to score for.
+     * @param index the event index.
+     * @param scoreCache the score cache, or null to not cache.
+     */
+    public WindowScorer(TargetEvent targetEvent, EventIndex index, ScoreCache scoreCache) {
+        int i;
+        int[] days;                                         //days with a cluster event
+        EventSet sigEvents;                                 //sig event ids
+
+        this.targetEvent = targetEvent;
+        this.index = index;
+        this.scoreCache = scoreCache;
+
+        targetDay = (targetEvent.day >= 0) ? targetEvent.day : index.dayNumber(targetEvent.date);
+        sigEvents = index.daySet(targetDay);
+        days = (targetEvent.cluster != null) ? index.clusterDays(targetEvent.cluster) : new int[0];
+
+        //the target event is not included if it is present in the rows
+        clusterTimes = new long[days.length];
+        dayCounts = new int[days.length];
+        numDays = 0;
+        for (i = 0; i < days.length; i++) {
+            if (days[i] != targetDay) {
+                clusterTimes[numDays] = index.dayTime(days[i]);
+                dayCounts[numDays] = index.matchCount(days[i], sigEvents);
+                numDays++;
+            }
+        }
+        sigCodes = null;
+
+        reset(Long.MIN_VALUE);
+    }
+
+    /**
+     * Add a day after the days in the index, such as a day from a live feed. It is only
+     * kept if it has an event from the target cluster. The cached scores are for the
+     * index days only, so the score cache is not used after a day is added.
+     * @param dayTime time of the day, not before any day already added.
+     * @param codes event codes of the day.
+     * @return true if the day has a cluster event and was added.
+     */
+    public boolean addDay(long dayTime, long[] codes) {
+        int i;
+        int count;                                          //events matching the target day
+        boolean inCluster;                                  //day has a cluster event
+        int[] sigIds;                                       //event ids of the target day
+
+        inCluster = false;
+        if (targetEvent.cluster != null) {
+            for (i = 0; (i < codes.length) && !inCluster; i++) {
+                inCluster = targetEvent.cluster.contains(codes[i]);
+            }
+        }
+        if (!inCluster) return false;
+
+        //the events are counted each time they occur, as they are for the index days
+        if (sigCodes == null) {
+            sigIds = index.daySet(targetDay).toArray();
+            sigCodes = new long[sigIds.length];
+            for (i = 0; i < sigIds.length; i++) {
+                sigCodes[i] = index.eventCode(sigIds[i]);
+            }
+            Arrays.sort(sigCodes);
+        }
+        count = 0;
+        for (long code : codes) {
+            if (Arrays.binarySearch(sigCodes, code) >= 0) count++;
+        }
+
+        if (numDays == clusterTimes.length) {
+            clusterTimes = Arrays.copyOf(clusterTimes, Math.max(16, (numDays * 2)));
+            dayCounts = Arrays.copyOf(dayCounts, clusterTimes.length);
+        }
+        clusterTimes[numDays] = dayTime;
+        dayCounts[numDays] = count;
+        numDays++;
+        scoreCache = null;
+
+        return true;
+    }
+
+    /**
+     * Score the target event for the time window.
+     * If the window has moved backwards it is rebuilt, otherwise only the days that
+     * enter or leave the window are processed. A cached score is returned without
+     * moving the window, which is then moved further on the next call.
+     * @param start start time in milliseconds for the date range.
+     * @param end end time in milliseconds for the date range.
+     * @return footprint of the events before the target event.
+     */
+    public Footprint score(long start, long end) {
+        double gapSum;                                      //sum of the day gaps
+        Footprint score;                                    //the score
+
+        if (scoreCache != null) {
+            score = scoreCache.get(targetEvent, start, end, index);
+            if (score != null) return score;
+        }
+
+        if ((start < winStart) || (end < winEnd)) {
+            reset(start);
+        }
+        winStart = start;
+        winEnd = end;
+
+        //add the new days first, so the gaps are known when old days are removed
+        while ((tail < numDays) && (clusterTimes[tail] <= end)) {
+            add();
+        }
+        while ((head < tail) && (clusterTimes[head] < start)) {
+            evict();
+        }
+
+        //the gaps add up to the time from the first to the last day, the same as the full score
+        gapSum = (tail - head > 1) ? TargetScore.dayGap(clusterTimes[head], clusterTimes[tail - 1]) : 0;
+
+        score = TargetScore.tsFootprint((tail - head), gapSum, countSum, cohSum, numRuns, targetEvent.event);
+        if (scoreCache != null) {
+            scoreCache.put(targetEvent, start, end, index, score);
+        }
+
+        return score;
+    }
+
+    /**
+     * Empty the window and move it to the start time.
+     * @param start start time in milliseconds.
+     */
+    private void reset(long start) {
+        head = 0;
+        while ((head < numDays) && (clusterTimes[head] < start)) {
+            head++;
+        }
+        tail = head;
+        winStart = start;
+        winEnd = Long.MIN_VALUE;
+        countSum = 0;
+        cohSum = 0;
+        numRuns = 0;
+    }
+
+    /** Add the next day to the end of the window */
+    private void add() {
+        double diff;                                        //gap to the previous day
+
+        if (tail > head) {
+            diff = gap(tail - 1);
+
+            if (diff <= 1) {
+                //a new run, unless the previous gap was also continuous
+                if ((tail - head < 2) || (gap(tail - 2) > 1)) numRuns++;
+                cohSum++;
+            }
+        }
+
+        countSum += dayCounts[tail];
+        tail++;
+    }
+
+    /** Remove the first day from the start of the window */
+    private void evict() {
+        double diff;                                        //gap to the next day
+
+        if (tail - head > 1) {
+            diff = gap(head);
+
+            if (diff <= 1) {
+                //the run ends, unless the next gap is also continuous
+                if ((tail - head < 3) || (gap(head + 1) > 1)) numRuns--;
+                cohSum--;
+            }
+        }
+
+        countSum -= dayCounts[head];
+        head++;
+    }
+
+    /**
+     * Get the gap in days between a cluster day and the next one.
+     * @param pos position of the cluster day.
+     * @return the gap in days.
+     */
+    private double gap(int pos) {
+        return TargetScore.dayGap(clusterTimes[pos], clusterTimes[pos + 1]);
+    }
+}
@@ -11,13 +11,11 @@
 package eq_fp.model;
 
 
-import eq_fp.util.DataConst;
-import org.licas.ai_solver.model.result.Cluster;
-import org.jlog2.util.StringHandler;
+import eq_fp.util.EqConst;
+import eq_fp.util.EventCode;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
 
 
 /** Stores the analysis model */
@@ -26,41 +24,61 @@ public class AnalysisModel {
     /** List of target clusters */
     public ArrayList<TargetEvent> targetEvents;
 
-    /** The analysis description */
-    public HashMap<String, ArrayList<String>> keyClusters;
+    /** The analysis description - the compound key of each target footprint, with the other footprints for its window */
+    public HashMap<String, ArrayList<Footprint>> keyClusters;
 
 
     /** Create a new instance of AnalysisModel */
-    public AnalysisModel(LinkedHashMap<String, ArrayList<String>> dataRows,
-                         ArrayList<Cluster> clusters, int minMag) {
+    public AnalysisModel(EventIndex index, ArrayList<EventCluster> clusters, int minMag) {
         targetEvents = new ArrayList<>();
         keyClusters = new HashMap<>();
-        clustersToTargets(dataRows, clusters, minMag);
+        clustersToTargets(index, clusters, minMag);
+    }
+
+    /**
+     * Create a new instance of AnalysisModel with target events that are already known,
+     * such as from an analysis snapshot.
+     * @param targetEvents the target events.
+     */
+    public AnalysisModel(ArrayList<TargetEvent> targetEvents) {
+        this.targetEvents = targetEvents;
+        keyClusters = new HashMap<>();
+    }
+
+    /**
+     * Get the footprint of a key event, from its compound key, the same as when the
+     * analysis file is read.
+     * @param key the compound key.
+     * @return the footprint.
+     */
+    public static Footprint keyFootprint(String key) {
+        String[] keyParts;                                  //description and event
+
+        keyParts = EqConst.fromCompoundKey(key);
+        return Footprint.fromString(keyParts[0], keyParts[1]);
     }
 
     /**
      * Generate the target event clusters from the input data.
-     * @param dataRows list of event data rows.
+     * @param index index of the event data rows.
      * @param clusters list of frequency gridt clusters.
      * @param minMag threshold for a significant event.
      */
-    private void clustersToTargets(LinkedHashMap<String, ArrayList<String>> dataRows,
-                                   ArrayList<Cluster> clusters, int minMag) {
+    private void clustersToTargets(EventIndex index, ArrayList<EventCluster> clusters, int minMag) {
         int i;
-        String nextKey;
+        int id;                                             //event id
         ArrayList<String> added;                            //events added
         ArrayList<TargetEvent> allEvents;                   //list of all target clusters
-        Cluster cluster;
+        EventCluster cluster;
         TargetEvent tg, tg2;
 
         for (i = 0; i < clusters.size(); i++) {
             cluster = clusters.get(i);
 
-            for (Object obj : cluster.list) {
-                nextKey = (String)obj;
-                if (getMagnitude(nextKey) >= minMag) {
+            for (int member = 0; member < cluster.size(); member++) {
+                if (getMagnitude(cluster.code(member)) >= minMag) {
                     tg = new TargetEvent();
-                    tg.event = nextKey;
+                    tg.event = cluster.key(member);
                     tg.cluster = cluster;
                     targetEvents.add(tg);
                     break;
@@ -78,17 +96,20 @@ public class AnalysisModel {
             tg = targetEvents.get(i);
 
             if (tg.cluster != null) {
-                for (String datestr : dataRows.keySet()) {
+                id = index.eventId(tg.event);
+                if (id < 0) continue;
+
+                //the posting list gives the days with the event directly, in the events file order
+                for (int day : index.eventDaysRead(id)) {
                     //if (added.contains(tg.event)) break;
 
-                    if (dataRows.get(datestr).contains(tg.event)) {
-                        tg2 = (TargetEvent) tg.clone();
-                        tg2.date = datestr;
-                        tg2.dataRow = dataRows.get(datestr);
-                        allEvents.add(tg2);
+                    tg2 = (TargetEvent) tg.clone();
+                    tg2.date = index.dayKey(day);
+                    tg2.day = day;
+                    tg2.dataRow = index.dayEvents(day);
+                    allEvents.add(tg2);
 
-                        //added.add(tg2.event);
-                    }
+                    //added.add(tg2.event);
                 }
             }
         }
@@ -97,14 +118,11 @@ public class AnalysisModel {
     }
 
     /**
-     * Get the magnitude part of the event key.
-     * @param eventKey whole event description.
+     * Get the magnitude part of the event code.
+     * @param eventCode whole event code.
      * @return magnitude only.
      */
-    private int getMagnitude(String eventKey) {
-        ArrayList<String> tokens;               //tokens
-
-        tokens = StringHandler.tokenize(eventKey, DataConst.KEYSEP, false);
-        return Integer.parseInt(tokens.get(2));
+    private int getMagnitude(long eventCode) {
+        return EventCode.band(eventCode);
     }
 }
@@ -0,0 +1,363 @@
+/*
+ * AnalysisSnapshot.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import eq_fp.util.EventCode;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.zip.CRC32;
+
+
+/**
+ * Binary snapshot of an analysis, written next to the analysis file. It holds the
+ * target events, with their cluster and date, and the footprint that a simulation
+ * compares against for each target. The footprint is found the same way as from the
+ * analysis file - the last target event for the date, and then the last key event for
+ * that event. It is stored as numbers. The snapshot also holds checksums
+ * of the events and clusters it was created from and the analysis arguments, so a
+ * simulation only uses it for the same data.
+ */
+public class AnalysisSnapshot {
+
+    /** Extension added to the analysis file name for the snapshot file */
+    public static final String FILEEXT = ".bin";
+
+    /** Marks an analysis snapshot file - EQAN */
+    public static final int MAGIC = 0x4551414E;
+
+    /** File format version */
+    public static final int VERSION = 2;
+
+
+    /** Checksum of the event index */
+    protected long eventsChecksum;
+
+    /** Checksum of the clusters */
+    protected long clustersChecksum;
+
+    /** Analysis arguments - minimum magnitude, units before and unit size */
+    protected String[] args;
+
+    /** Cluster number of each target */
+    protected int[] clusterNumbers;
+
+    /** Event code of each target */
+    protected long[] eventCodes;
+
+    /** Date key of each target */
+    protected String[] dates;
+
+    /** Footprint of each target, or null if there is none */
+    protected Footprint[] footprints;
+
+
+    /**
+     * Create a new instance of AnalysisSnapshot.
+     * @param numTargets number of target events.
+     */
+    protected AnalysisSnapshot(int numTargets) {
+        clusterNumbers = new int[numTargets];
+        eventCodes = new long[numTargets];
+        dates = new String[numTargets];
+        footprints = new Footprint[numTargets];
+    }
+
+    /**
+     * Create a snapshot of an analysis.
+     * @param am the analysis model.
+     * @param index index of the events that were analysed.
+     * @param clusters the clusters that were analysed.
+     * @param args analysis arguments.
+     * @return the snapshot.
+     */
+    public static AnalysisSnapshot create(AnalysisModel am, EventIndex index, ArrayList<EventCluster> clusters,
+                                          String[] args) {
+        int i;
+        TargetEvent tg;                                     //target event
+        Footprint footprint;                                //footprint of a key event
+        AnalysisSnapshot snapshot;                          //the snapshot
+        HashMap<String, String> dateLoc;                    //last target event for each date
+        HashMap<String, Footprint> locAnaKey;               //last key event for each event
+        IdentityHashMap<EventCluster, Integer> clusterNumbers; //number of each cluster
+
+        snapshot = new AnalysisSnapshot(am.targetEvents.size());
+        snapshot.eventsChecksum = index.getChecksum();
+        snapshot.clustersChecksum = clustersChecksum(clusters);
+        snapshot.args = new String[] {args[0], args[1], args[2]};
+
+        clusterNumbers = new IdentityHashMap<>();
+        for (i = 0; i < clusters.size(); i++) {
+            clusterNumbers.put(clusters.get(i), i);
+        }
+
+        //the same order as the analysis file is written and read
+        dateLoc = new HashMap<>();
+        for (TargetEvent targetEvent : am.targetEvents) {
+            dateLoc.put(targetEvent.date, targetEvent.event);
+        }
+        locAnaKey = new HashMap<>();
+        for (String key : am.keyClusters.keySet()) {
+            footprint = AnalysisModel.keyFootprint(key);
+            locAnaKey.put(footprint.event, footprint);
+        }
+
+        for (i = 0; i < am.targetEvents.size(); i++) {
+            tg = am.targetEvents.get(i);
+            snapshot.clusterNumbers[i] = clusterNumbers.get(tg.cluster);
+            snapshot.eventCodes[i] = EventCode.toCode(tg.event);
+            snapshot.dates[i] = tg.date;
+            snapshot.footprints[i] = locAnaKey.get(dateLoc.get(tg.date));
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Calculate a checksum over the cluster names and members.
+     * @param clusters the clusters.
+     * @return the checksum value.
+     */
+    public static long clustersChecksum(ArrayList<EventCluster> clusters) {
+        CRC32 crc;                                          //checksum
+
+        crc = new CRC32();
+        for (EventCluster cluster : clusters) {
+            crc.update(String.valueOf(cluster.getName()).getBytes(StandardCharsets.UTF_8));
+            crc.update('\n');
+            for (int member = 0; member < cluster.size(); member++) {
+                crc.update(cluster.key(member).getBytes(StandardCharsets.UTF_8));
+                crc.update(',');
+            }
+            crc.update('\n');
+        }
+
+        return crc.getValue();
+    }
+
+    /**
+     * Get the snapshot file for an analysis file.
+     * @param analysisFile the analysis file.
+     * @return the snapshot file.
+     */
+    public static String snapshotFile(String analysisFile) {
+        return (analysisFile + FILEEXT);
+    }
+
+    /**
+     * Create the target events again, for the same events and clusters.
+     * @param index index of the events.
+     * @param clusters the clusters.
+     * @return the target events, in the analysis order.
+     */
+    public ArrayList<TargetEvent> getTargetEvents(EventIndex index, ArrayList<EventCluster> clusters) {
+        TargetEvent tg;                                     //target event
+        ArrayList<TargetEvent> targetEvents;                //all target events
+
+        targetEvents = new ArrayList<>(dates.length);
+        for (int i = 0; i < dates.length; i++) {
+            tg = new TargetEvent();
+            tg.event = EventCode.toKey(eventCodes[i]);
+            tg.cluster = clusters.get(clusterNumbers[i]);
+            tg.date = dates[i];
+            tg.day = index.dayNumber(dates[i]);
+            tg.dataRow = index.dayEvents(tg.day);
+            targetEvents.add(tg);
+        }
+
+        return targetEvents;
+    }
+
+    /**
+     * Get the number of target events.
+     * @return the number of targets.
+     */
+    public int numTargets() {
+        return dates.length;
+    }
+
+    /**
+     * Get the footprint of a target.
+     * @param target the target number.
+     * @return the footprint, or null if there is none.
+     */
+    public Footprint getFootprint(int target) {
+        return footprints[target];
+    }
+
+    /**
+     * Return true if the snapshot was created from the same events, clusters and
+     * analysis arguments.
+     * @param index index of the events.
+     * @param clusters the clusters.
+     * @param args analysis arguments.
+     * @return true if it matches.
+     */
+    public boolean matches(EventIndex index, ArrayList<EventCluster> clusters, String[] args) {
+        for (int i = 0; i < this.args.length; i++) {
+            if (!this.args[i].equals(args[i])) return false;
+        }
+
+        return ((eventsChecksum == index.getChecksum()) && (clustersChecksum == clustersChecksum(clusters)));
+    }
+
+    /**
+     * Write the snapshot next to the analysis file. The analysis file should already
+     * be written and closed.
+     * @param analysisFile the analysis file.
+     * @throws Exception any error.
+     */
+    public void write(String analysisFile) throws Exception {
+        File textFile;                                      //analysis file
+        DataOutputStream writer;                            //output file
+
+        try {
+            textFile = new File(analysisFile);
+            writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(snapshotFile(analysisFile))));
+            try {
+                writer.writeInt(MAGIC);
+                writer.writeInt(VERSION);
+                writer.writeLong(textFile.length());
+                writer.writeLong(textFile.lastModified());
+                writer.writeLong(eventsChecksum);
+                writer.writeLong(clustersChecksum);
+                for (String arg : args) {
+                    writeString(writer, arg);
+                }
+
+                writer.writeInt(dates.length);
+                for (int i = 0; i < dates.length; i++) {
+                    writer.writeInt(clusterNumbers[i]);
+                    writer.writeLong(eventCodes[i]);
+                    writeString(writer, dates[i]);
+                    writer.writeBoolean(footprints[i] != null);
+                    if (footprints[i] != null) {
+                        writer.writeInt(footprints[i].numGaps);
+                        writer.writeDouble(footprints[i].avGap);
+                        writer.writeDouble(footprints[i].avCount);
+                        writer.writeDouble(footprints[i].avCoh);
+                        writeString(writer, footprints[i].event);
+                    }
+                }
+            }
+            finally {
+                writer.close();
+            }
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Write a string as its length and UTF-8 bytes, with a length of -1 for null.
+     * @param writer the output file.
+     * @param str the string.
+     * @throws Exception any error.
+     */
+    private static void writeString(DataOutputStream writer, String str) throws Exception {
+        byte[] bytes;                                       //string bytes
+
+        if (str == null) {
+            writer.writeInt(-1);
+            return;
+        }
+
+        bytes = str.getBytes(StandardCharsets.UTF_8);
+        writer.writeInt(bytes.length);
+        writer.write(bytes);
+    }
+
+    /**
+     * Read a string written by writeString.
+     * @param buffer the file contents.
+     * @return the string.
+     */
+    private static String readString(ByteBuffer buffer) {
+        int length;                                         //number of bytes
+        byte[] bytes;                                       //string bytes
+
+        length = buffer.getInt();
+        if (length < 0) return null;
+
+        bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the snapshot for an analysis file.
+     * @param analysisFile the analysis file.
+     * @return the snapshot, or null if there is no snapshot, it does not match the
+     * analysis file, or it is cut short.
+     * @throws Exception any error.
+     */
+    public static AnalysisSnapshot read(String analysisFile) throws Exception {
+        File textFile, binFile;                             //analysis files
+        AnalysisSnapshot snapshot;                          //the snapshot
+        ByteBuffer buffer;                                  //snapshot file contents
+        long eventsChecksum, clustersChecksum;              //data checksums
+        String[] args;                                      //analysis arguments
+
+        try {
+            textFile = new File(analysisFile);
+            binFile = new File(snapshotFile(analysisFile));
+            if (!binFile.exists() || (binFile.length() < (2 * Integer.BYTES))) return null;
+
+            buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(binFile.getPath())));
+
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) return null;
+            if ((buffer.getLong() != textFile.length()) || (buffer.getLong() != textFile.lastModified())) {
+                return null;
+            }
+            eventsChecksum = buffer.getLong();
+            clustersChecksum = buffer.getLong();
+            args = new String[3];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = readString(buffer);
+            }
+
+            snapshot = new AnalysisSnapshot(buffer.getInt());
+            snapshot.eventsChecksum = eventsChecksum;
+            snapshot.clustersChecksum = clustersChecksum;
+            snapshot.args = args;
+            for (int i = 0; i < snapshot.dates.length; i++) {
+                snapshot.clusterNumbers[i] = buffer.getInt();
+                snapshot.eventCodes[i] = buffer.getLong();
+                snapshot.dates[i] = readString(buffer);
+                if (buffer.get() != 0) {
+                    snapshot.footprints[i] = new Footprint(buffer.getInt(), buffer.getDouble(), buffer.getDouble(),
+                            buffer.getDouble(), readString(buffer));
+                }
+            }
+
+            return snapshot;
+        }
+        catch (BufferUnderflowException ex) {
+            //the file was cut short, so it is out of date
+            return null;
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+}
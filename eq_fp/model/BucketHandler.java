@@ -0,0 +1,26 @@
+/*
+ * BucketHandler.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+/** Receives the time buckets of events as they are closed and written to the events file */
+public interface BucketHandler {
+
+    /**
+     * Process a time bucket that has been closed. A bucket is closed by the first event
+     * of a later bucket, and has that bucket's date key, as in the events file.
+     * @param dateKey the date key of the row.
+     * @param keyTime time in milliseconds of the date key.
+     * @param codes event codes of the bucket, in the order they were read.
+     * @throws Exception any error.
+     */
+    void closedBucket(String dateKey, long keyTime, long[] codes) throws Exception;
+}
@@ -0,0 +1,32 @@
+/*
+ * ClusterEngine.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import org.licas.ai_solver.central.grid.CellCount;
+
+import java.util.ArrayList;
+
+
+/**
+ * Clusters the events that occur together in the grid dataset. The clusters are
+ * returned as lists of cell counts, as the clusters file is written from them.
+ */
+public interface ClusterEngine {
+
+    /**
+     * Cluster the events in the grid dataset.
+     * @param gridEvents the grid dataset, with one row of event keys for each time bucket.
+     * @return the clusters, each with its member keys and their counts.
+     * @throws Exception any error.
+     */
+    ArrayList<ArrayList<CellCount>> cluster(ArrayList<ArrayList<String>> gridEvents) throws Exception;
+}
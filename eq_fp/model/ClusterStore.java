@@ -0,0 +1,279 @@
+/*
+ * ClusterStore.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+/**
+ * Binary copy of the clusters file, written next to it when the frequency grid has
+ * been solved. Each cluster has a name and its member event codes, with the count for
+ * each member. The file is versioned, and is read in one go and copied out with bulk
+ * gets, so it loads without parsing any text. As with the events, the header holds
+ * the size and modified time of the text clusters file, and the binary file is only
+ * used while they still match.
+ */
+public class ClusterStore {
+
+    /** Extension added to the clusters file name for the binary file */
+    public static final String FILEEXT = ".bin";
+
+    /** Marks a clusters binary file - EQCL */
+    public static final int MAGIC = 0x4551434C;
+
+    /** File format version */
+    public static final int VERSION = 1;
+
+    /** Size of the header in bytes */
+    private static final int HEADERSIZE = 32;
+
+
+    /** Name of each cluster */
+    protected ArrayList<String> names;
+
+    /** Member event codes of each cluster */
+    protected ArrayList<long[]> memberCodes;
+
+    /** Member counts of each cluster */
+    protected ArrayList<double[]> memberCounts;
+
+
+    /**
+     * Create a new instance of ClusterStore, with no clusters.
+     */
+    public ClusterStore() {
+        names = new ArrayList<>();
+        memberCodes = new ArrayList<>();
+        memberCounts = new ArrayList<>();
+    }
+
+    /**
+     * Get the binary file for a clusters file.
+     * @param clustersFile the clusters file.
+     * @return the binary file.
+     */
+    public static String storeFile(String clustersFile) {
+        return (clustersFile + FILEEXT);
+    }
+
+    /**
+     * Add a cluster.
+     * @param name the cluster name.
+     * @param codes event codes of the members.
+     * @param counts count for each member.
+     */
+    public void addCluster(String name, long[] codes, double[] counts) {
+        names.add(name);
+        memberCodes.add(codes);
+        memberCounts.add(counts);
+    }
+
+    /**
+     * Get the number of clusters.
+     * @return the number of clusters.
+     */
+    public int numClusters() {
+        return names.size();
+    }
+
+    /**
+     * Get the name of a cluster.
+     * @param cluster the cluster number.
+     * @return the cluster name.
+     */
+    public String getName(int cluster) {
+        return names.get(cluster);
+    }
+
+    /**
+     * Get the member event codes of a cluster.
+     * @param cluster the cluster number.
+     * @return the event codes.
+     */
+    public long[] getCodes(int cluster) {
+        return memberCodes.get(cluster);
+    }
+
+    /**
+     * Get the member counts of a cluster.
+     * @param cluster the cluster number.
+     * @return the count for each member.
+     */
+    public double[] getCounts(int cluster) {
+        return memberCounts.get(cluster);
+    }
+
+    /**
+     * Create the clusters, the same as they are read from the clusters file.
+     * @return list of clusters.
+     */
+    public ArrayList<EventCluster> getClusters() {
+        ArrayList<EventCluster> clusters;                   //all clusters
+
+        //the codes are used as they are, without any event keys
+        clusters = new ArrayList<>(names.size());
+        for (int i = 0; i < names.size(); i++) {
+            clusters.add(new EventCluster(names.get(i), memberCodes.get(i)));
+        }
+
+        return clusters;
+    }
+
+    /**
+     * Write the binary file for a clusters file. The text clusters file should already
+     * be written and closed.
+     * @param clustersFile the text clusters file.
+     * @throws Exception any error.
+     */
+    public void write(String clustersFile) throws Exception {
+        int offset;                                         //offset into the members or names
+        byte[][] nameBytes;                                 //bytes of each name
+        File textFile;                                      //text clusters file
+        DataOutputStream writer;                            //output file
+
+        try {
+            textFile = new File(clustersFile);
+            nameBytes = new byte[names.size()][];
+            for (int i = 0; i < names.size(); i++) {
+                nameBytes[i] = names.get(i).getBytes(StandardCharsets.UTF_8);
+            }
+
+            writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(storeFile(clustersFile))));
+            try {
+                //header
+                writer.writeInt(MAGIC);
+                writer.writeInt(VERSION);
+                writer.writeLong(textFile.length());
+                writer.writeLong(textFile.lastModified());
+                offset = 0;
+                for (long[] codes : memberCodes) {
+                    offset += codes.length;
+                }
+                writer.writeInt(names.size());
+                writer.writeInt(offset);
+
+                //longs and doubles first, so they stay aligned
+                for (long[] codes : memberCodes) {
+                    for (long code : codes) {
+                        writer.writeLong(code);
+                    }
+                }
+                for (double[] counts : memberCounts) {
+                    for (double count : counts) {
+                        writer.writeDouble(count);
+                    }
+                }
+
+                //offsets of each cluster into the members, then into the name bytes
+                offset = 0;
+                writer.writeInt(offset);
+                for (long[] codes : memberCodes) {
+                    offset += codes.length;
+                    writer.writeInt(offset);
+                }
+                offset = 0;
+                writer.writeInt(offset);
+                for (byte[] name : nameBytes) {
+                    offset += name.length;
+                    writer.writeInt(offset);
+                }
+                for (byte[] name : nameBytes) {
+                    writer.write(name);
+                }
+            }
+            finally {
+                writer.close();
+            }
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Read the binary file for a clusters file.
+     * @param clustersFile the text clusters file.
+     * @return the clusters, or null if there is no binary file, it does not match the
+     * text file, or it is cut short.
+     * @throws Exception any error.
+     */
+    public static ClusterStore read(String clustersFile) throws Exception {
+        int numClusters;                                    //number of clusters
+        int numMembers;                                     //number of members
+        int[] offsets;                                      //offset of each cluster into the members
+        int[] nameOffsets;                                  //offset of each name into the name bytes
+        long[] allCodes;                                    //every member code
+        double[] allCounts;                                 //every member count
+        byte[] nameBytes;                                   //bytes of the names
+        File textFile, binFile;                             //clusters files
+        ClusterStore store;                                 //the clusters
+        ByteBuffer buffer;                                  //binary file contents
+
+        try {
+            textFile = new File(clustersFile);
+            binFile = new File(storeFile(clustersFile));
+            if (!binFile.exists() || (binFile.length() < HEADERSIZE)) return null;
+
+            buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(binFile.getPath())));
+
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) return null;
+            if ((buffer.getLong() != textFile.length()) || (buffer.getLong() != textFile.lastModified())) {
+                return null;
+            }
+            numClusters = buffer.getInt();
+            numMembers = buffer.getInt();
+
+            allCodes = new long[numMembers];
+            allCounts = new double[numMembers];
+            offsets = new int[numClusters + 1];
+            nameOffsets = new int[numClusters + 1];
+            buffer.asLongBuffer().get(allCodes);
+            buffer.position(buffer.position() + (numMembers * Long.BYTES));
+            buffer.asDoubleBuffer().get(allCounts);
+            buffer.position(buffer.position() + (numMembers * Double.BYTES));
+            buffer.asIntBuffer().get(offsets);
+            buffer.position(buffer.position() + ((numClusters + 1) * Integer.BYTES));
+            buffer.asIntBuffer().get(nameOffsets);
+            buffer.position(buffer.position() + ((numClusters + 1) * Integer.BYTES));
+            nameBytes = new byte[nameOffsets[numClusters]];
+            buffer.get(nameBytes);
+
+            store = new ClusterStore();
+            for (int i = 0; i < numClusters; i++) {
+                store.addCluster(new String(nameBytes, nameOffsets[i], (nameOffsets[i + 1] - nameOffsets[i]),
+                                StandardCharsets.UTF_8),
+                        Arrays.copyOfRange(allCodes, offsets[i], offsets[i + 1]),
+                        Arrays.copyOfRange(allCounts, offsets[i], offsets[i + 1]));
+            }
+
+            return store;
+        }
+        catch (BufferUnderflowException ex) {
+            //the file was cut short, so it is out of date
+            return null;
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,286 @@
+/*
+ * ColumnarDataset.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+
+
+/**
+ * The input columns of a dataset, stored by column in primitive arrays. A column is
+ * numeric if its first value is a number, and is then a double array. Other columns
+ * are text, stored as codes into a dictionary of the distinct values. A numeric column
+ * can still hold the odd value that is not a number, which is kept to one side.
+ * It is filled directly by the dataset parser, as a row handler.
+ */
+public class ColumnarDataset implements RowHandler {
+
+    /** Initial capacity of the columns */
+    private static final int INITSIZE = 1024;
+
+
+    /** Number of rows */
+    protected int numRows;
+
+    /** Number of columns */
+    protected int numCols;
+
+    /** True for each column that is numeric */
+    protected boolean[] numeric;
+
+    /** Values for each numeric column */
+    protected double[][] numbers;
+
+    /** Rows of each numeric column that do not hold a number */
+    protected BitSet[] notNumbers;
+
+    /** Text of the values that are not numbers in a numeric column, keyed by row */
+    protected ArrayList<HashMap<Integer, String>> otherValues;
+
+    /** Dictionary codes for each text column */
+    protected int[][] codes;
+
+    /** Dictionary of values for each text column */
+    protected ArrayList<ArrayList<String>> dictionary;
+
+    /** Dictionary code for each value, for each text column */
+    protected ArrayList<HashMap<String, Integer>> dictionaryCodes;
+
+    /** Rows as object lists, created when they are asked for */
+    protected ArrayList<ArrayList<Object>> rowView;
+
+
+    /**
+     * Create a new instance of ColumnarDataset. The columns are set up from the
+     * first row that is added.
+     */
+    public ColumnarDataset() {
+        numRows = 0;
+        numCols = -1;
+        rowView = null;
+    }
+
+    /**
+     * Add the next data row to the columns.
+     * @param row the input column values for the row.
+     * @return true to keep reading.
+     */
+    public boolean nextRow(DataRow row) {
+        int col;                                            //column number
+        Integer code;                                       //dictionary code
+
+        if (numCols < 0) createColumns(row);
+        if (numRows == capacity()) grow();
+
+        for (col = 0; col < numCols; col++) {
+            if (numeric[col]) {
+                try {
+                    numbers[col][numRows] = row.getDouble(col);
+                }
+                catch (NumberFormatException nfex) {
+                    numbers[col][numRows] = Double.NaN;
+                    notNumbers[col].set(numRows);
+                    if (!row.getString(col).isEmpty()) {
+                        otherValues.get(col).put(numRows, row.getString(col));
+                    }
+                }
+            }
+            else {
+                code = dictionaryCodes.get(col).get(row.getString(col));
+                if (code == null) {
+                    code = dictionary.get(col).size();
+                    dictionary.get(col).add(row.getString(col));
+                    dictionaryCodes.get(col).put(row.getString(col), code);
+                }
+                codes[col][numRows] = code;
+            }
+        }
+
+        numRows++;
+        rowView = null;
+        return true;
+    }
+
+    /**
+     * Set up the columns, using the first row to decide the column types.
+     * @param row the first data row.
+     */
+    private void createColumns(DataRow row) {
+        int col;                                            //column number
+
+        numCols = row.size();
+        numeric = new boolean[numCols];
+        numbers = new double[numCols][];
+        notNumbers = new BitSet[numCols];
+        otherValues = new ArrayList<>(numCols);
+        codes = new int[numCols][];
+        dictionary = new ArrayList<>(numCols);
+        dictionaryCodes = new ArrayList<>(numCols);
+
+        for (col = 0; col < numCols; col++) {
+            numeric[col] = row.isNumber(col);
+            if (numeric[col]) {
+                numbers[col] = new double[INITSIZE];
+                notNumbers[col] = new BitSet();
+                otherValues.add(new HashMap<>());
+                dictionary.add(null);
+                dictionaryCodes.add(null);
+            }
+            else {
+                codes[col] = new int[INITSIZE];
+                otherValues.add(null);
+                dictionary.add(new ArrayList<>());
+                dictionaryCodes.add(new HashMap<>());
+            }
+        }
+    }
+
+    /**
+     * Get the number of rows the columns can hold.
+     * @return the column capacity.
+     */
+    private int capacity() {
+        if (numCols == 0) return Integer.MAX_VALUE;
+        return (numeric[0] ? numbers[0].length : codes[0].length);
+    }
+
+    /** Double the size of the columns */
+    private void grow() {
+        for (int col = 0; col < numCols; col++) {
+            if (numeric[col]) numbers[col] = Arrays.copyOf(numbers[col], (numRows * 2));
+            else codes[col] = Arrays.copyOf(codes[col], (numRows * 2));
+        }
+    }
+
+    /**
+     * Get the number of rows.
+     * @return the number of rows.
+     */
+    public int numRows() {
+        return numRows;
+    }
+
+    /**
+     * Get the number of columns.
+     * @return the number of columns, or 0 if there are no rows.
+     */
+    public int numCols() {
+        return Math.max(numCols, 0);
+    }
+
+    /**
+     * Return true if the column is numeric.
+     * @param col the column number.
+     * @return true if it is a double column.
+     */
+    public boolean isNumeric(int col) {
+        return numeric[col];
+    }
+
+    /**
+     * Get a number from a numeric column.
+     * @param col the column number.
+     * @param row the row number.
+     * @return the number value.
+     * @throws NumberFormatException if the row does not hold a number.
+     */
+    public double getDouble(int col, int row) {
+        if (notNumbers[col].get(row)) {
+            throw new NumberFormatException("Not a number at row " + row + ", column " + col);
+        }
+        return numbers[col][row];
+    }
+
+    /**
+     * Return true if every row of a numeric column holds a number.
+     * @param col the column number.
+     * @return true if there are no other values.
+     */
+    public boolean allNumbers(int col) {
+        return (numeric[col] && notNumbers[col].isEmpty());
+    }
+
+    /**
+     * Get the values of a numeric column. Rows that are not a number hold NaN.
+     * @param col the column number.
+     * @return the column values, which may be longer than the number of rows.
+     */
+    public double[] getDoubles(int col) {
+        return numbers[col];
+    }
+
+    /**
+     * Get a value from a text column.
+     * @param col the column number.
+     * @param row the row number.
+     * @return the text value.
+     */
+    public String getString(int col, int row) {
+        return dictionary.get(col).get(codes[col][row]);
+    }
+
+    /**
+     * Get the dictionary codes of a text column.
+     * @param col the column number.
+     * @return the column codes, which may be longer than the number of rows.
+     */
+    public int[] getCodes(int col) {
+        return codes[col];
+    }
+
+    /**
+     * Get the dictionary of a text column.
+     * @param col the column number.
+     * @return the distinct values, indexed by code.
+     */
+    public ArrayList<String> getDictionary(int col) {
+        return dictionary.get(col);
+    }
+
+    /**
+     * Get a value as the object that the dataset tables would hold - a Double for
+     * a number, or else the text, or null if it is empty.
+     * @param col the column number.
+     * @param row the row number.
+     * @return the value.
+     */
+    public Object getValue(int col, int row) {
+        if (!numeric[col]) return getString(col, row);
+        if (notNumbers[col].get(row)) return otherValues.get(col).get(row);
+        return numbers[col][row];
+    }
+
+    /**
+     * Get the rows as a list of value lists, the same as DatasetManager.getInputDatasets.
+     * This creates an object for each value, so is only for compatibility.
+     * @return the list of rows.
+     */
+    public ArrayList<ArrayList<Object>> getInputDatasets() {
+        int row, col;                                       //row and column numbers
+        ArrayList<Object> valueList;                        //values for a row
+
+        if (rowView == null) {
+            rowView = new ArrayList<>(numRows);
+            for (row = 0; row < numRows; row++) {
+                valueList = new ArrayList<>(numCols());
+                for (col = 0; col < numCols(); col++) {
+                    valueList.add(getValue(col, row));
+                }
+                rowView.add(valueList);
+            }
+        }
+
+        return rowView;
+    }
+}
@@ -0,0 +1,524 @@
+/*
+ * CooccurrenceMatrix.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * Sparse, symmetric counts of how often two events occur in the same time bucket,
+ * the same as the licas frequency grid. Each pair of positions in a row adds 1, so
+ * two events that occur m and n times in a row add m * n, and an event that occurs
+ * m times adds m * (m - 1) to itself. The rows are split into shards that are counted
+ * on a fork-join pool and merged, and the counts are then stored by event, with the
+ * neighbours of each event sorted by id. It is not changed once it is counted, so it
+ * can be shared between threads.
+ */
+public class CooccurrenceMatrix {
+
+    /** Number of rows that one task counts */
+    public static final int SHARDROWS = 512;
+
+
+    /** Number of event ids */
+    protected int size;
+
+    /** Start of the neighbours of each event, with one more for the end */
+    protected int[] rowStarts;
+
+    /** Neighbour ids, sorted for each event */
+    protected int[] neighbours;
+
+    /** Count for each neighbour */
+    protected long[] counts;
+
+
+    /**
+     * Create a new instance of CooccurrenceMatrix.
+     * @param size number of event ids.
+     * @param pairs merged counts, for each pair with the smaller id first.
+     */
+    protected CooccurrenceMatrix(int size, PairCounts pairs) {
+        int i;
+        int id1, id2;                                       //ids of a pair
+        int pos;                                            //next position for an event
+        long count;                                         //count of a pair
+        long[] keys;                                        //sorted pair keys
+        int[] next;                                         //next position of each event
+
+        this.size = size;
+        keys = pairs.keys();
+        Arrays.parallelSort(keys);
+
+        rowStarts = new int[size + 1];
+        for (long key : keys) {
+            id1 = (int) (key >>> 32);
+            id2 = (int) key;
+            rowStarts[id1 + 1]++;
+            if (id1 != id2) rowStarts[id2 + 1]++;
+        }
+        for (i = 0; i < size; i++) {
+            rowStarts[i + 1] += rowStarts[i];
+        }
+
+        //with the keys sorted, the lower neighbours of an event are added before the
+        //higher ones, so the neighbours of each event are in id order
+        neighbours = new int[rowStarts[size]];
+        counts = new long[rowStarts[size]];
+        next = Arrays.copyOf(rowStarts, size);
+        for (long key : keys) {
+            id1 = (int) (key >>> 32);
+            id2 = (int) key;
+            count = pairs.get(key);
+            pos = next[id1]++;
+            neighbours[pos] = id2;
+            counts[pos] = count;
+            if (id1 != id2) {
+                pos = next[id2]++;
+                neighbours[pos] = id1;
+                counts[pos] = count;
+            }
+        }
+    }
+
+    /**
+     * Count the co-occurrences of the events in the rows.
+     * @param rows the event ids in each row, in any order and with any repeats.
+     * @param size number of event ids.
+     * @param pool pool to count the shards on.
+     * @return the counts.
+     */
+    public static CooccurrenceMatrix count(int[][] rows, int size, ForkJoinPool pool) {
+        return new CooccurrenceMatrix(size, pool.invoke(new CountTask(rows, 0, rows.length)));
+    }
+
+    /**
+     * Add the co-occurrences of more rows to the counts. Only the new rows are
+     * counted, and these counts are not changed.
+     * @param rows the event ids in each new row.
+     * @param size number of event ids, which can be more than before.
+     * @param pool pool to count the shards on.
+     * @return the new counts.
+     */
+    public CooccurrenceMatrix add(int[][] rows, int size, ForkJoinPool pool) {
+        PairCounts pairs;                                   //counts of the new rows
+
+        pairs = pool.invoke(new CountTask(rows, 0, rows.length));
+        for (int id = 0; id < this.size; id++) {
+            for (int pos = rowStarts[id]; pos < rowStarts[id + 1]; pos++) {
+                if (neighbours[pos] >= id) pairs.add(PairCounts.key(id, neighbours[pos]), counts[pos]);
+            }
+        }
+
+        return new CooccurrenceMatrix(Math.max(size, this.size), pairs);
+    }
+
+    /**
+     * Get the number of event ids.
+     * @return the number of ids.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of events that an event occurs with, including itself if it
+     * occurs more than once in a row.
+     * @param id the event id.
+     * @return the number of neighbours.
+     */
+    public int degree(int id) {
+        return (rowStarts[id + 1] - rowStarts[id]);
+    }
+
+    /**
+     * Get a neighbour of an event.
+     * @param id the event id.
+     * @param k the neighbour number, in id order.
+     * @return the neighbour id.
+     */
+    public int neighbour(int id, int k) {
+        return neighbours[rowStarts[id] + k];
+    }
+
+    /**
+     * Get the count for a neighbour of an event.
+     * @param id the event id.
+     * @param k the neighbour number, in id order.
+     * @return the count.
+     */
+    public long neighbourCount(int id, int k) {
+        return counts[rowStarts[id] + k];
+    }
+
+    /**
+     * Get the count for two events.
+     * @param id1 the first event id.
+     * @param id2 the second event id.
+     * @return the count, or 0 if they never occur together.
+     */
+    public long count(int id1, int id2) {
+        int pos;                                            //position of the neighbour
+
+        pos = Arrays.binarySearch(neighbours, rowStarts[id1], rowStarts[id1 + 1], id2);
+        return ((pos >= 0) ? counts[pos] : 0);
+    }
+
+    /**
+     * Get the events that an event occurs with most often, not counting itself. Only
+     * the neighbours of the event are looked at, so this takes time in its degree.
+     * @param id the event id.
+     * @param n the number of neighbours to find.
+     * @return the neighbour ids, largest count first, with ties by id. There are fewer
+     * than n if the event has fewer neighbours.
+     */
+    public int[] topNeighbours(int id, int n) {
+        int num;                                            //neighbours in the heap
+        int[] heap;                                         //positions, smallest first
+        int[] top;                                          //the top neighbours
+
+        heap = new int[Math.max(0, Math.min(n, degree(id)))];
+        num = 0;
+        if (heap.length > 0) {
+            for (int pos = rowStarts[id]; pos < rowStarts[id + 1]; pos++) {
+                if (neighbours[pos] == id) continue;
+                if (num < heap.length) {
+                    heap[num++] = pos;
+                    siftUp(heap, num - 1);
+                }
+                else if (before(pos, heap[0])) {
+                    heap[0] = pos;
+                    siftDown(heap, num);
+                }
+            }
+        }
+
+        //take the smallest off the heap, filling the result from the end
+        top = new int[num];
+        while (num > 0) {
+            top[num - 1] = neighbours[heap[0]];
+            heap[0] = heap[--num];
+            siftDown(heap, num);
+        }
+
+        return top;
+    }
+
+    /**
+     * Return true if a neighbour position ranks before another one, by its larger
+     * count or, with the same count, its smaller id.
+     * @param pos1 the first position.
+     * @param pos2 the second position.
+     * @return true if the first ranks before the second.
+     */
+    private boolean before(int pos1, int pos2) {
+        return ((counts[pos1] > counts[pos2]) || ((counts[pos1] == counts[pos2]) && (neighbours[pos1] < neighbours[pos2])));
+    }
+
+    /**
+     * Move a heap entry up until its parent does not rank after it.
+     * @param heap the heap, with the lowest ranked position first.
+     * @param i the entry.
+     */
+    private void siftUp(int[] heap, int i) {
+        int parent;                                         //parent entry
+        int swap;                                           //position being swapped
+
+        while (i > 0) {
+            parent = (i - 1) >>> 1;
+            if (!before(heap[parent], heap[i])) return;
+            swap = heap[parent];
+            heap[parent] = heap[i];
+            heap[i] = swap;
+            i = parent;
+        }
+    }
+
+    /**
+     * Move the first heap entry down until no child ranks below it.
+     * @param heap the heap, with the lowest ranked position first.
+     * @param num number of entries in the heap.
+     */
+    private void siftDown(int[] heap, int num) {
+        int i;                                              //the entry
+        int child;                                          //lowest ranked child
+        int swap;                                           //position being swapped
+
+        i = 0;
+        while ((child = (2 * i) + 1) < num) {
+            if (((child + 1) < num) && before(heap[child], heap[child + 1])) child++;
+            if (!before(heap[i], heap[child])) return;
+            swap = heap[child];
+            heap[child] = heap[i];
+            heap[i] = swap;
+            i = child;
+        }
+    }
+
+    /**
+     * Get the number of pairs with a count, counting each pair once.
+     * @return the number of pairs.
+     */
+    public long numPairs() {
+        long num;                                           //number of pairs
+
+        num = 0;
+        for (int id = 0; id < size; id++) {
+            for (int pos = rowStarts[id]; pos < rowStarts[id + 1]; pos++) {
+                if (neighbours[pos] >= id) num++;
+            }
+        }
+
+        return num;
+    }
+
+
+    /** Counts the rows of a shard, splitting it while it is too large */
+    protected static class CountTask extends RecursiveTask<PairCounts> {
+
+        /** Serial version, as a fork/join task is serializable */
+        private static final long serialVersionUID = 1L;
+
+        /** The event ids in each row */
+        protected int[][] rows;
+
+        /** Start of the shard */
+        protected int from;
+
+        /** End of the shard, exclusive */
+        protected int to;
+
+
+        /**
+         * Create a new instance of CountTask.
+         * @param rows the event ids in each row.
+         * @param from start of the shard.
+         * @param to end of the shard, exclusive.
+         */
+        protected CountTask(int[][] rows, int from, int to) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Count the shard, or split it in two and merge the counts of each half.
+         * @return the counts.
+         */
+        protected PairCounts compute() {
+            int mid;                                        //split position
+            CountTask left;                                 //first half
+            PairCounts counts, other;                       //counts of each half
+
+            if ((to - from) <= SHARDROWS) {
+                counts = new PairCounts();
+                for (int i = from; i < to; i++) {
+                    countRow(rows[i], counts);
+                }
+                return counts;
+            }
+
+            mid = (from + to) >>> 1;
+            left = new CountTask(rows, from, mid);
+            left.fork();
+            counts = new CountTask(rows, mid, to).compute();
+            other = left.join();
+
+            //add the smaller counts to the larger
+            if (other.size() > counts.size()) {
+                other.addAll(counts);
+                return other;
+            }
+            counts.addAll(other);
+            return counts;
+        }
+
+        /**
+         * Add the co-occurrences in a row.
+         * @param row the event ids in the row.
+         * @param counts the counts to add to.
+         */
+        private static void countRow(int[] row, PairCounts counts) {
+            int i, j;
+            int num;                                        //number of distinct ids
+            int[] ids;                                      //distinct ids, sorted
+            long[] repeats;                                 //times each id occurs
+
+            ids = row.clone();
+            Arrays.sort(ids);
+            repeats = new long[ids.length];
+            num = 0;
+            for (i = 0; i < ids.length; i++) {
+                if ((i == 0) || (ids[i] != ids[num - 1])) {
+                    ids[num] = ids[i];
+                    repeats[num++] = 1;
+                }
+                else {
+                    repeats[num - 1]++;
+                }
+            }
+
+            for (i = 0; i < num; i++) {
+                if (repeats[i] > 1) counts.add(PairCounts.key(ids[i], ids[i]), (repeats[i] * (repeats[i] - 1)));
+                for (j = i + 1; j < num; j++) {
+                    counts.add(PairCounts.key(ids[i], ids[j]), (repeats[i] * repeats[j]));
+                }
+            }
+        }
+    }
+
+
+    /** Open addressing hash map from a pair of event ids to its count */
+    protected static class PairCounts {
+
+        /** Marks an empty slot */
+        private static final long EMPTY = -1L;
+
+
+        /** Pair key in each slot */
+        protected long[] slotKeys;
+
+        /** Count in each slot */
+        protected long[] slotCounts;
+
+        /** Number of pairs */
+        protected int numPairs;
+
+
+        /** Create a new instance of PairCounts */
+        protected PairCounts() {
+            slotKeys = new long[64];
+            slotCounts = new long[64];
+            Arrays.fill(slotKeys, EMPTY);
+            numPairs = 0;
+        }
+
+        /**
+         * Create the key of a pair.
+         * @param id1 the smaller id.
+         * @param id2 the larger id.
+         * @return the key.
+         */
+        protected static long key(int id1, int id2) {
+            return (((long) id1 << 32) | id2);
+        }
+
+        /**
+         * Get the number of pairs.
+         * @return the number of pairs.
+         */
+        protected int size() {
+            return numPairs;
+        }
+
+        /**
+         * Find the slot of a key.
+         * @param key the pair key.
+         * @return the slot with the key, or the empty slot to add it to.
+         */
+        private int slot(long key) {
+            int slot;                                       //slot to try
+            int mask;                                       //slot number mask
+            long hash;                                      //mixed key
+
+            mask = (slotKeys.length - 1);
+            hash = (key * 0x9E3779B97F4A7C15L);
+            slot = (int) (hash ^ (hash >>> 32)) & mask;
+            while ((slotKeys[slot] != EMPTY) && (slotKeys[slot] != key)) {
+                slot = ((slot + 1) & mask);
+            }
+
+            return slot;
+        }
+
+        /**
+         * Add to the count of a pair.
+         * @param key the pair key.
+         * @param count the count to add.
+         */
+        protected void add(long key, long count) {
+            int slot;                                       //slot of the key
+
+            slot = slot(key);
+            if (slotKeys[slot] == EMPTY) {
+                slotKeys[slot] = key;
+                numPairs++;
+                if ((numPairs * 2) > slotKeys.length) {
+                    slotCounts[slot] = count;
+                    grow();
+                    return;
+                }
+            }
+            slotCounts[slot] += count;
+        }
+
+        /**
+         * Get the count of a pair.
+         * @param key the pair key.
+         * @return the count, or 0 if it has none.
+         */
+        protected long get(long key) {
+            int slot;                                       //slot of the key
+
+            slot = slot(key);
+            return ((slotKeys[slot] == key) ? slotCounts[slot] : 0);
+        }
+
+        /**
+         * Add all of the counts of another map.
+         * @param other the other counts.
+         */
+        protected void addAll(PairCounts other) {
+            for (int i = 0; i < other.slotKeys.length; i++) {
+                if (other.slotKeys[i] != EMPTY) add(other.slotKeys[i], other.slotCounts[i]);
+            }
+        }
+
+        /**
+         * Get the pair keys.
+         * @return a new array of the keys, in no order.
+         */
+        protected long[] keys() {
+            int num;                                        //number of keys
+            long[] keys;                                    //the keys
+
+            keys = new long[numPairs];
+            num = 0;
+            for (long key : slotKeys) {
+                if (key != EMPTY) keys[num++] = key;
+            }
+
+            return keys;
+        }
+
+        /** Double the number of slots */
+        private void grow() {
+            int slot;                                       //new slot of a key
+            long[] oldKeys, oldCounts;                      //the old slots
+
+            oldKeys = slotKeys;
+            oldCounts = slotCounts;
+            slotKeys = new long[oldKeys.length * 2];
+            slotCounts = new long[oldKeys.length * 2];
+            Arrays.fill(slotKeys, EMPTY);
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    slot = slot(oldKeys[i]);
+                    slotKeys[slot] = oldKeys[i];
+                    slotCounts[slot] = oldCounts[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * DataRow.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import org.ai_heuristic.eval.EvaluateBase;
+
+
+/**
+ * The input column values for one line of a dataset file. The values are kept as
+ * the text from the file and converted to a type when they are asked for, so a
+ * numeric column can be read without boxing.
+ */
+public class DataRow {
+
+    /** The data points type */
+    protected String dataType;
+
+    /** Text value for each input column */
+    protected String[] values;
+
+    /** Line number in the file */
+    protected int lineNumber;
+
+
+    /**
+     * Create a new instance of DataRow.
+     * @param dataType the data points type from the dataset header.
+     * @param numCols the number of input columns.
+     */
+    public DataRow(String dataType, int numCols) {
+        this.dataType = dataType;
+        values = new String[numCols];
+        lineNumber = 0;
+    }
+
+    /**
+     * Copy the row, so it can be kept after the dataset manager reuses it.
+     * @return the copy.
+     */
+    public DataRow copy() {
+        DataRow row;                                        //the copy
+
+        row = new DataRow(dataType, values.length);
+        System.arraycopy(values, 0, row.values, 0, values.length);
+        row.lineNumber = lineNumber;
+
+        return row;
+    }
+
+    /**
+     * Get the number of input columns.
+     * @return the number of columns.
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Get the text for an input column.
+     * @param col the input column position.
+     * @return the text value.
+     */
+    public String getString(int col) {
+        return values[col];
+    }
+
+    /**
+     * Get an input column as a number.
+     * @param col the input column position.
+     * @return the number value.
+     * @throws NumberFormatException if the value is not a number.
+     */
+    public double getDouble(int col) {
+        return Double.parseDouble(values[col].trim());
+    }
+
+    /**
+     * Return true if the input column is a number.
+     * @param col the input column position.
+     * @return true if it can be read as a number.
+     */
+    public boolean isNumber(int col) {
+        try {
+            getDouble(col);
+            return true;
+        }
+        catch (NumberFormatException nfex) {
+            return false;
+        }
+    }
+
+    /**
+     * Get an input column as the object that the dataset tables would hold,
+     * which is the data type if possible, or else the text.
+     * @param col the input column position.
+     * @return the value, or null if it is empty.
+     */
+    public Object getValue(int col) {
+        try {
+            return EvaluateBase.valueFromString(dataType, values[col]);
+        }
+        catch (NumberFormatException nfex) {
+            return EvaluateBase.valueFromString(String.class.getName(), values[col]);
+        }
+    }
+
+    /**
+     * Get the line number of the row in the file.
+     * @return the line number, starting from 1.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+}
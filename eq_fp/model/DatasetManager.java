@@ -21,6 +21,14 @@ import org.jlog2.exception.ExceptionHandler;
 import org.jlog2.util.FileLoader;
 import org.jlog2.util.StringHandler;
 
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 
 
@@ -32,6 +40,9 @@ public class DatasetManager
 {
     /** For logging */
     private static final Logger logger;
+
+    /** Size of the buffer when streaming the data file */
+    private static final int READBUFFER = (1 << 16);
        
     
     /** The dataset file path */
@@ -45,6 +56,12 @@ public class DatasetManager
     
     /** Output dataset to match to. Each element is another ArrayList of data values */
     protected ArrayList outDatasets;
+
+    /** Data point tokenizer */
+    protected String tokenizer;
+
+    /** Input columns, if the dataset was read by column */
+    protected ColumnarDataset columnar;
         
     
     static
@@ -63,6 +80,8 @@ public class DatasetManager
     {
         datasetFile = filePath;
         dataType = null;
+        tokenizer = SymbolHandler.CA;
+        columnar = null;
         inDatasets = new ArrayList();
         outDatasets = new ArrayList();
     }
@@ -74,18 +93,14 @@ public class DatasetManager
      */
     public boolean createDataset() throws Exception
     {
-        int i, j, k;
+        int i, j;
         int nextIndex;                              //next index
-        int start;                                  //start column
-        int end;                                    //end column
-        int number, counter;                        //counter
+        int counter;                                //counter
         String input;                               //input text
         String nextToken;                           //next token
-        String nextDescr;                           //next description
         String nextLine;                            //next line
-        String tokenizer;                           //point tokenizer
-        ArrayList inputCols;                        //input columns
-        ArrayList outputCols;                       //output columns
+        ArrayList<Integer> inputCols;               //input columns
+        ArrayList<Integer> outputCols;              //output columns
         ArrayList wordList;                         //list of words
         ArrayList lineList;                         //all lines
         ArrayList valueList;                        //list of values
@@ -97,8 +112,8 @@ public class DatasetManager
             input = FileLoader.getInputStream(datasetFile);
             tokenizer = SymbolHandler.CA;
             dataset = new ArrayList();
-            inputCols = new ArrayList();
-            outputCols = new ArrayList();
+            inputCols = new ArrayList<>();
+            outputCols = new ArrayList<>();
 
             //tokenize lines and retrieve the metadata
             counter = 0;
@@ -107,83 +122,8 @@ public class DatasetManager
             for (i = 0; i < 4; i++)
             {
                 nextLine = (String)lineList.get(i);
-                nextDescr = null;
-                wordList = StringHandler.tokenize(nextLine, SymbolHandler.CL, false);
-                nextToken = (String)wordList.get(0);
-                if (wordList.size() > 1) nextDescr = (String)wordList.get(1);
-
-                if (nextToken.equalsIgnoreCase("Input") || nextToken.endsWith("Input"))
-                {
-                    if (nextDescr != null)
-                    {
-                        valueList = StringHandler.tokenize(nextDescr, SymbolHandler.CA, false);
-                        for (j = 0; j < valueList.size(); j++)
-                        {
-                            nextToken = (String)valueList.get(j);
-                            if (nextToken.contains("-"))
-                            {
-                                valueList2 = StringHandler.tokenize(nextDescr, "-", false);
-                                start = Integer.parseInt((String)valueList2.get(0));
-                                end = Integer.parseInt((String)valueList2.get(1));
-
-                                for (k = start; k <= end; k++)
-                                {
-                                    inputCols.add(k);
-                                }
-                            }
-                            else
-                            {
-                                number = Integer.parseInt(nextToken.trim());
-                                inputCols.add(number);
-                            }
-                        }
-                    }
-
-                    counter++;
-                }
-                else if (nextToken.equalsIgnoreCase(DataConst.OUTPUT))
-                {
-                    if (nextDescr != null)
-                    {
-                        valueList = StringHandler.tokenize(nextDescr, SymbolHandler.CA, false);
-                        for (j = 0; j < valueList.size(); j++)
-                        {
-                            nextToken = (String)valueList.get(j);
-                            if (nextToken.contains("-"))
-                            {
-                                valueList2 = StringHandler.tokenize(nextToken, "-", false);
-                                start = Integer.parseInt((String)valueList2.get(0));
-                                end = Integer.parseInt((String)valueList2.get(1));
-
-                                for (k = start; k <= end; k++)
-                                {
-                                    outputCols.add(k);
-                                }
-                            }
-                            else
-                            {
-                                start = Integer.parseInt(nextToken.trim());
-                                outputCols.add(start);
-                            }
-                        }
-                    }
-
-                    counter++;
-                }
-                else if (nextToken.equalsIgnoreCase(AiHeuristicConst.TYPE))
-                {
-                    if (nextDescr != null) dataType = nextDescr.trim();
-                    counter++;
-                }
-                else if (nextToken.equalsIgnoreCase(DataConst.TOKENIZER))
-                {
-                    if (nextDescr != null) tokenizer = nextDescr.trim();
-                    counter++;
-                }
-                else
-                {
-                    break;
-                }
+                if (!readHeaderLine(nextLine, inputCols, outputCols)) break;
+                counter++;
             }
 
             //add the data points to lists
@@ -218,7 +158,7 @@ public class DatasetManager
                     try {
                         valueList2 = new ArrayList();
                         for (j = 0; j < inputCols.size(); j++) {
-                            nextIndex = ((Integer) inputCols.get(j)).intValue();
+                            nextIndex = inputCols.get(j).intValue();
                             valueList2.add(valueList.get(nextIndex));
                         }
                         inDatasets.add(valueList2);
@@ -238,7 +178,7 @@ public class DatasetManager
                     valueList2 = new ArrayList();
                     for (j = 0; j < outputCols.size(); j++)
                     {
-                        nextIndex = ((Integer)outputCols.get(j)).intValue();
+                        nextIndex = outputCols.get(j).intValue();
                         valueList2.add(valueList.get(nextIndex));
                     }
                     outDatasets.add(valueList2);
@@ -254,14 +194,301 @@ public class DatasetManager
         }
     }
     
+    /**
+     * Read a metadata line from the top of the data file.
+     * @param nextLine the line to read.
+     * @param inputCols list to add the input column numbers to.
+     * @param outputCols list to add the output column numbers to.
+     * @return true if the line is metadata, false if it is a data row.
+     */
+    protected boolean readHeaderLine(String nextLine, ArrayList<Integer> inputCols, ArrayList<Integer> outputCols)
+    {
+        int j, k;
+        int start;                                  //start column
+        int end;                                    //end column
+        int number;                                 //column number
+        String nextToken;                           //next token
+        String nextDescr;                           //next description
+        ArrayList<String> wordList;                 //list of words
+        ArrayList<String> valueList;                //list of values
+        ArrayList<String> valueList2;               //list of values
+
+        nextDescr = null;
+        wordList = StringHandler.tokenize(nextLine, SymbolHandler.CL, false);
+        nextToken = wordList.get(0);
+        if (wordList.size() > 1) nextDescr = wordList.get(1);
+
+        if (nextToken.equalsIgnoreCase("Input") || nextToken.endsWith("Input"))
+        {
+            if (nextDescr != null)
+            {
+                valueList = StringHandler.tokenize(nextDescr, SymbolHandler.CA, false);
+                for (j = 0; j < valueList.size(); j++)
+                {
+                    nextToken = valueList.get(j);
+                    if (nextToken.contains("-"))
+                    {
+                        valueList2 = StringHandler.tokenize(nextDescr, "-", false);
+                        start = Integer.parseInt(valueList2.get(0));
+                        end = Integer.parseInt(valueList2.get(1));
+
+                        for (k = start; k <= end; k++)
+                        {
+                            inputCols.add(k);
+                        }
+                    }
+                    else
+                    {
+                        number = Integer.parseInt(nextToken.trim());
+                        inputCols.add(number);
+                    }
+                }
+            }
+        }
+        else if (nextToken.equalsIgnoreCase(DataConst.OUTPUT))
+        {
+            if (nextDescr != null)
+            {
+                valueList = StringHandler.tokenize(nextDescr, SymbolHandler.CA, false);
+                for (j = 0; j < valueList.size(); j++)
+                {
+                    nextToken = valueList.get(j);
+                    if (nextToken.contains("-"))
+                    {
+                        valueList2 = StringHandler.tokenize(nextToken, "-", false);
+                        start = Integer.parseInt(valueList2.get(0));
+                        end = Integer.parseInt(valueList2.get(1));
+
+                        for (k = start; k <= end; k++)
+                        {
+                            outputCols.add(k);
+                        }
+                    }
+                    else
+                    {
+                        start = Integer.parseInt(nextToken.trim());
+                        outputCols.add(start);
+                    }
+                }
+            }
+        }
+        else if (nextToken.equalsIgnoreCase(AiHeuristicConst.TYPE))
+        {
+            if (nextDescr != null) dataType = nextDescr.trim();
+        }
+        else if (nextToken.equalsIgnoreCase(DataConst.TOKENIZER))
+        {
+            if (nextDescr != null) tokenizer = nextDescr.trim();
+        }
+        else
+        {
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Read the data file one line at a time and pass the input column values of each
+     * row to the handler, so the whole file is never held in memory. The input and
+     * output datasets are not created. Rows without all of the input columns are
+     * skipped, as they are by createDataset.
+     * @param handler receives each data row.
+     * @return the number of rows passed to the handler.
+     * @throws Exception any error.
+     */
+    public int streamDataset(RowHandler handler) throws Exception
+    {
+        FileChannel channel;                        //file channel
+
+        try
+        {
+            channel = FileChannel.open(Paths.get(datasetFile), StandardOpenOption.READ);
+            return streamLines(new BufferedReader(Channels.newReader(channel, Charset.defaultCharset().newDecoder(), -1),
+                    READBUFFER), handler);
+        }
+        catch (Exception ex)
+        {
+            throw ExceptionHandler.handleException(logger, LoggerHandler.ERROR, "streamDataset",
+                    "", ex);
+        }
+    }
+
+    /**
+     * Read data lines from a stream, such as a live feed, and pass the input column
+     * values of each row to the handler as it arrives. The stream should start with
+     * the same metadata lines as a data file. It is read until it ends or the handler
+     * stops, and is then closed.
+     * @param input the data stream.
+     * @param handler receives each data row.
+     * @return the number of rows passed to the handler.
+     * @throws Exception any error.
+     */
+    public int streamDataset(InputStream input, RowHandler handler) throws Exception
+    {
+        try
+        {
+            return streamLines(new BufferedReader(new InputStreamReader(input, Charset.defaultCharset()), READBUFFER),
+                    handler);
+        }
+        catch (Exception ex)
+        {
+            throw ExceptionHandler.handleException(logger, LoggerHandler.ERROR, "streamDataset",
+                    "", ex);
+        }
+    }
+
+    /**
+     * Read data lines and pass the input column values of each row to the handler.
+     * @param reader the line reader, which is closed at the end.
+     * @param handler receives each data row.
+     * @return the number of rows passed to the handler.
+     * @throws Exception any error.
+     */
+    private int streamLines(BufferedReader reader, RowHandler handler) throws Exception
+    {
+        int i, j;
+        int lineNumber;                             //line number
+        int numRows;                                //number of rows read
+        int column;                                 //column number
+        int pos, next;                              //token positions
+        int[] columns;                              //input column numbers
+        boolean header;                             //still reading the metadata
+        boolean lastColumn;                         //at the last column of the line
+        String nextLine;                            //next line
+        ArrayList<Integer> inputCols;               //input columns
+        ArrayList<Integer> outputCols;              //output columns
+        DataRow row;                                //reused data row
+
+        tokenizer = SymbolHandler.CA;
+        inputCols = new ArrayList<>();
+        outputCols = new ArrayList<>();
+
+        try
+        {
+            lineNumber = 0;
+            numRows = 0;
+            header = true;
+            row = null;
+            columns = null;
+
+            while ((nextLine = reader.readLine()) != null)
+            {
+                lineNumber++;
+
+                //the metadata is in the first 4 lines at most
+                if (header)
+                {
+                    if ((lineNumber <= 4) && readHeaderLine(nextLine, inputCols, outputCols)) continue;
+
+                    header = false;
+                    columns = new int[inputCols.size()];
+                    for (i = 0; i < columns.length; i++)
+                    {
+                        columns[i] = inputCols.get(i).intValue();
+                    }
+                    row = new DataRow(dataType, columns.length);
+                }
+
+                //pick out the input columns, the same as the tokenizer would
+                // a trailing separator does not start another column
+                for (i = 0; i < columns.length; i++)
+                {
+                    row.values[i] = null;
+                }
+
+                column = 0;
+                pos = 0;
+                lastColumn = false;
+                while (!lastColumn)
+                {
+                    next = nextLine.indexOf(tokenizer, pos);
+                    if (next < 0)
+                    {
+                        next = nextLine.length();
+                        lastColumn = true;
+                    }
+
+                    for (j = 0; j < columns.length; j++)
+                    {
+                        if (columns[j] == column) row.values[j] = nextLine.substring(pos, next);
+                    }
+
+                    pos = (next + tokenizer.length());
+                    if (pos == nextLine.length()) lastColumn = true;
+                    column++;
+                }
+
+                if (!rowComplete(row))
+                {
+                    System.out.println("A data row may not be complete and has not been included.");
+                    continue;
+                }
+
+                row.lineNumber = lineNumber;
+                numRows++;
+                if (!handler.nextRow(row)) break;
+            }
+
+            return numRows;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Read the data file into typed input columns. The file is streamed, so no row
+     * lists are created, and getInputDatasets then returns a view of the columns.
+     * @return the input columns.
+     * @throws Exception any error.
+     */
+    public ColumnarDataset createColumnarDataset() throws Exception
+    {
+        ColumnarDataset dataset;                    //input columns
+
+        dataset = new ColumnarDataset();
+        streamDataset(dataset);
+        columnar = dataset;
+
+        return dataset;
+    }
+
+    /**
+     * Return true if every input column has a value.
+     * @param row the data row.
+     * @return true if the row is complete.
+     */
+    private boolean rowComplete(DataRow row)
+    {
+        for (String value : row.values)
+        {
+            if (value == null) return false;
+        }
+
+        return true;
+    }
+
     /**
      * Get the input dataset. Each element is a ArrayList of data points.
+     * If the dataset was read by column, the rows are created from the columns.
      * @return the value of inDatasets.
      */
     public ArrayList getInputDatasets()
     {
+        if (inDatasets.isEmpty() && (columnar != null)) return columnar.getInputDatasets();
         return inDatasets;
     }
+
+    /**
+     * Get the input columns.
+     * @return the input columns, or null if the dataset was not read by column.
+     */
+    public ColumnarDataset getColumnarDataset()
+    {
+        return columnar;
+    }
     
     /**
      * Get the output dataset. Each element is a ArrayList of data points.
@@ -0,0 +1,161 @@
+/*
+ * EventCluster.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import eq_fp.util.EventCode;
+import org.licas.ai_solver.model.result.Cluster;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * A cluster of related events from the frequency grid, with the member events stored
+ * as event codes. It is created once when the clusters are read and is not changed,
+ * so it can be shared between threads. The members are kept in their cluster order,
+ * and also sorted to test if an event is a member.
+ */
+public class EventCluster {
+
+    /** The cluster name */
+    private final String name;
+
+    /** Member event codes, in the cluster order */
+    private final long[] codes;
+
+    /** Member event codes, sorted */
+    private final long[] sortedCodes;
+
+
+    /**
+     * Create a new instance of EventCluster.
+     * @param name the cluster name.
+     * @param codes member event codes, in the cluster order.
+     */
+    public EventCluster(String name, long[] codes) {
+        this.name = name;
+        this.codes = codes.clone();
+        sortedCodes = codes.clone();
+        Arrays.sort(sortedCodes);
+    }
+
+    /**
+     * Create a cluster from the text keys of its members.
+     * A member that is not a valid event key cannot match any event, so it is left out.
+     * @param name the cluster name.
+     * @param keys member event keys, in the cluster order.
+     * @return the cluster.
+     */
+    public static EventCluster fromKeys(String name, List<?> keys) {
+        int num;                                            //number of members
+        long[] codes;                                       //member codes
+
+        codes = new long[keys.size()];
+        num = 0;
+        for (Object key : keys) {
+            try {
+                codes[num] = EventCode.toCode(String.valueOf(key).trim());
+                num++;
+            }
+            catch (NumberFormatException nfex) {
+                //not a valid key, so cannot be in the events
+            }
+        }
+
+        return new EventCluster(name, Arrays.copyOf(codes, num));
+    }
+
+    /**
+     * Create a cluster from a licas cluster of event keys.
+     * @param cluster the licas cluster.
+     * @return the cluster.
+     */
+    public static EventCluster fromCluster(Cluster cluster) {
+        return fromKeys(cluster.name, cluster.list);
+    }
+
+    /**
+     * Get the cluster name.
+     * @return the cluster name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the number of members.
+     * @return the number of members.
+     */
+    public int size() {
+        return codes.length;
+    }
+
+    /**
+     * Get the event code of a member.
+     * @param member the member number, in the cluster order.
+     * @return the event code.
+     */
+    public long code(int member) {
+        return codes[member];
+    }
+
+    /**
+     * Get the event key of a member.
+     * @param member the member number, in the cluster order.
+     * @return the event key.
+     */
+    public String key(int member) {
+        return EventCode.toKey(codes[member]);
+    }
+
+    /**
+     * Get the member event codes.
+     * @return a copy of the codes, in the cluster order.
+     */
+    public long[] getCodes() {
+        return codes.clone();
+    }
+
+    /**
+     * Return true if an event is a member of the cluster.
+     * @param code the event code.
+     * @return true if it is a member.
+     */
+    public boolean contains(long code) {
+        return (Arrays.binarySearch(sortedCodes, code) >= 0);
+    }
+
+    /**
+     * Return true if another cluster has the same members in the same order.
+     * @param cluster the other cluster.
+     * @return true if the members are the same.
+     */
+    public boolean sameMembers(EventCluster cluster) {
+        return ((cluster == this) || ((cluster != null) && Arrays.equals(codes, cluster.codes)));
+    }
+
+    /**
+     * Return a description of the cluster.
+     * @return the name and member keys.
+     */
+    public String toString() {
+        StringBuilder descr;                                //description
+
+        descr = new StringBuilder(name).append(": [");
+        for (int i = 0; i < codes.length; i++) {
+            if (i > 0) descr.append(", ");
+            descr.append(key(i));
+        }
+
+        return descr.append("]").toString();
+    }
+}
@@ -0,0 +1,478 @@
+/*
+ * EventFormatter.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import eq_fp.util.DataConst;
+import eq_fp.util.EventCode;
+import eq_fp.util.TimeParser;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+/**
+ * Re-formats raw data rows into grid events, as they are read. Each row is put in a
+ * time unit bucket and given an event key from its grid location and magnitude band.
+ * The rows for each bucket are written to the events file and kept as a grid row for
+ * the frequency grid. It can also carry on from the saved state of an earlier run, when
+ * more rows have been added to the raw dataset. The rows at or before the last event
+ * formatted are then skipped, the open time bucket is carried on, and the new rows are
+ * added to the end of the events files. The time and key of each row can also be
+ * worked out first by an EventParser, on another thread, and the parsed events then
+ * added in order.
+ */
+public class EventFormatter implements RowHandler {
+
+    /** Number of magnitude bands */
+    protected int numBands;
+
+    /** Works out the time bucket and key of each row */
+    protected EventParser parser;
+
+    /** Separator between the date and time in the raw data */
+    protected String timeSep;
+
+    /** Time unit for the buckets */
+    protected String timeUnit;
+
+    /** Grid cells and their categories */
+    protected GridCatalog gridCatalog;
+
+    /** File to write the grid catalog to */
+    protected String catalogFile;
+
+    /** Grid dataset, one row for each time bucket */
+    protected ArrayList<ArrayList<String>> fgDataset;
+
+    /** Grid row for the current time bucket */
+    protected ArrayList<String> fgRow;
+
+    /** Ordinal of the current time bucket */
+    protected long lastBucket;
+
+    /** To parse the date of the event that closes a bucket, for its date key */
+    protected TimeParser timeParser;
+
+    /** Reused text for the date keys */
+    protected StringBuilder dateKey;
+
+    /** Event codes for the current time bucket */
+    protected long[] fgCodes;
+
+    /** Number of event codes for the current time bucket */
+    protected int numCodes;
+
+    /** Date keys of the rows written to the events file */
+    protected ArrayList<String> rowKeys;
+
+    /** Times of the rows written to the events file */
+    protected long[] rowTimes;
+
+    /** Event codes of the rows written to the events file */
+    protected ArrayList<long[]> rowCodes;
+
+    /** Events file to write to */
+    protected OutputStream writer;
+
+    /** Name of the events file */
+    protected String eventsFile;
+
+    /** Time ordinal of the last event formatted */
+    protected long lastTime;
+
+    /** Number of events formatted with the last time ordinal */
+    protected int lastTimeCount;
+
+    /** Raw rows before this time ordinal were formatted by an earlier run */
+    protected long skipTime;
+
+    /** Number of raw rows at the skip time that were formatted by an earlier run */
+    protected int skipCount;
+
+    /** Number of raw rows at the skip time that have been read */
+    protected int skipSeen;
+
+    /** True if the new rows are added to the events files of an earlier run */
+    protected boolean appending;
+
+    /** Size of the text events file before the new rows were added */
+    protected long appendLength;
+
+    /** Modified time of the text events file before the new rows were added */
+    protected long appendModified;
+
+    /** Receives each time bucket as it is closed, or null */
+    protected BucketHandler bucketHandler;
+
+
+    /**
+     * Create a new instance of EventFormatter.
+     * @param eventsFile file to write the re-formatted data to.
+     * @param args input variables - number of bands, band size, time separator and time unit.
+     * @throws Exception any error.
+     */
+    public EventFormatter(String eventsFile, String[] args) throws Exception {
+        this(eventsFile, args, null);
+    }
+
+    /**
+     * Create a new instance of EventFormatter, which carries on from an earlier run.
+     * @param eventsFile file to write the re-formatted data to, or to add to.
+     * @param args input variables - number of bands, band size, time separator and time unit.
+     * @param state state of the earlier run for the events file, or null to start a new file.
+     * @throws Exception any error.
+     */
+    public EventFormatter(String eventsFile, String[] args, FormatState state) throws Exception {
+        File textFile;                                      //text events file
+
+        numBands = Integer.parseInt(args[0]);
+        parser = new EventParser(args);
+        timeSep = args[2];
+        timeUnit = args[3];
+
+        catalogFile = GridCatalog.catalogFile(eventsFile);
+        fgDataset = new ArrayList<>();
+        fgRow = null;
+        lastBucket = Long.MIN_VALUE;
+        lastTime = Long.MIN_VALUE;
+        lastTimeCount = 0;
+        skipTime = Long.MIN_VALUE;
+        skipCount = 0;
+        skipSeen = 0;
+        timeParser = new TimeParser();
+        dateKey = new StringBuilder(20);
+        fgCodes = new long[16];
+        numCodes = 0;
+        rowKeys = new ArrayList<>();
+        rowTimes = new long[64];
+        rowCodes = new ArrayList<>();
+        this.eventsFile = eventsFile;
+        bucketHandler = null;
+
+        appending = (state != null);
+        if (appending) {
+            gridCatalog = GridCatalog.read(catalogFile);
+            if (gridCatalog == null) throw new IllegalArgumentException("No grid catalog for: " + eventsFile);
+            lastTime = state.getLastTime();
+            lastTimeCount = state.getLastTimeCount();
+            skipTime = state.getLastTime();
+            skipCount = state.getLastTimeCount();
+
+            //the open bucket has not been written, so carries on as the first grid row
+            if (!state.getOpenRow().isEmpty()) {
+                fgRow = new ArrayList<>(state.getOpenRow());
+                fgDataset.add(fgRow);
+                for (String key : fgRow) {
+                    if (numCodes == fgCodes.length) fgCodes = Arrays.copyOf(fgCodes, (numCodes * 2));
+                    fgCodes[numCodes++] = EventCode.toCode(key);
+                }
+                lastBucket = state.getLastBucket();
+            }
+
+            textFile = new File(eventsFile);
+            appendLength = textFile.length();
+            appendModified = textFile.lastModified();
+        }
+        else {
+            gridCatalog = new GridCatalog(numBands);
+        }
+        writer = new BufferedOutputStream(new FileOutputStream(eventsFile, appending));
+    }
+
+    /**
+     * Set the handler that receives each time bucket as it is closed, such as to
+     * process a live feed one day at a time.
+     * @param bucketHandler the bucket handler, or null for none.
+     */
+    public void setBucketHandler(BucketHandler bucketHandler) {
+        this.bucketHandler = bucketHandler;
+    }
+
+    /**
+     * Process the next raw data row - date, latitude, longitude and magnitude.
+     * @param row the input column values for the row.
+     * @return true to keep reading.
+     * @throws Exception any error.
+     */
+    public boolean nextRow(DataRow row) throws Exception {
+        addEvent(row.getString(0), row.getDouble(1), row.getDouble(2), row.getDouble(3));
+        return true;
+    }
+
+    /**
+     * Process every row of a dataset read by column - date, latitude, longitude and
+     * magnitude. The columns are read straight from their arrays.
+     * @param dataset the input columns.
+     * @throws Exception any error.
+     */
+    public void addEvents(ColumnarDataset dataset) throws Exception {
+        int row;                                            //row number
+        int[] dates;                                        //date codes
+        double[] lats, lngs, values;                        //number columns
+        ArrayList<String> dateValues;                       //distinct dates
+
+        if (dataset.numRows() == 0) return;
+        if (dataset.isNumeric(0)) {
+            throw new IllegalArgumentException("The date column is not text");
+        }
+        for (int col = 1; col <= 3; col++) {
+            if (!dataset.allNumbers(col)) {
+                throw new NumberFormatException("Column " + col + " does not hold only numbers");
+            }
+        }
+
+        dates = dataset.getCodes(0);
+        dateValues = dataset.getDictionary(0);
+        lats = dataset.getDoubles(1);
+        lngs = dataset.getDoubles(2);
+        values = dataset.getDoubles(3);
+        for (row = 0; row < dataset.numRows(); row++) {
+            addEvent(dateValues.get(dates[row]), lats[row], lngs[row], values[row]);
+        }
+    }
+
+    /**
+     * Add an event to its time bucket.
+     * @param dateStr the raw date and time.
+     * @param lat latitude.
+     * @param lng longitude.
+     * @param value magnitude.
+     * @throws Exception any error.
+     */
+    public void addEvent(String dateStr, double lat, double lng, double value) throws Exception {
+        addEvent(parser.parse(dateStr, lat, lng, value));
+    }
+
+    /**
+     * Add an event that has been parsed to its time bucket. The events must be added
+     * in the order of the raw rows.
+     * @param event the parsed event.
+     * @throws Exception any error.
+     */
+    public void addEvent(ParsedEvent event) throws Exception {
+
+        //an earlier run has already formatted the rows up to its last event, and the
+        //first rows at that time, so new rows with the same time are still added
+        if (event.time < skipTime) return;
+        if (event.time == skipTime) {
+            skipSeen++;
+            if (skipSeen <= skipCount) return;
+        }
+
+        if (event.time > lastTime) {
+            lastTime = event.time;
+            lastTimeCount = 0;
+        }
+        if (event.time == lastTime) lastTimeCount++;
+
+        //register the grid cell, which gives a category for each band
+        gridCatalog.addCell(event.code);
+
+        if (event.bucket == lastBucket) {
+            fgRow.add(event.key);
+        } else {
+            //the date key is only created when a row is written, from the event that closes it
+            if (fgRow != null) {
+                timeParser.parse(event.dateStr, timeSep);
+                dateKey.setLength(0);
+                timeParser.appendBucketKey(dateKey, timeUnit);
+                writer.write((dateKey + "  " + String.valueOf(fgRow) + "\n").getBytes());
+                addRow(dateKey.toString(), timeParser.bucketTime(timeUnit));
+            }
+            fgRow = new ArrayList<>();
+            fgDataset.add(fgRow);
+            fgRow.add(event.key);
+            numCodes = 0;
+        }
+
+        if (numCodes == fgCodes.length) fgCodes = Arrays.copyOf(fgCodes, (numCodes * 2));
+        fgCodes[numCodes++] = event.code;
+
+        lastBucket = event.bucket;
+    }
+
+    /**
+     * Keep a row that has been written to the events file, for the binary copy, and
+     * pass it to the bucket handler.
+     * @param rowKey the date key of the row.
+     * @param rowTime the time of the date key.
+     * @throws Exception any error from the bucket handler.
+     */
+    private void addRow(String rowKey, long rowTime) throws Exception {
+        long[] codes;                                       //event codes of the row
+
+        codes = Arrays.copyOf(fgCodes, numCodes);
+        if (rowKeys.size() == rowTimes.length) rowTimes = Arrays.copyOf(rowTimes, (rowTimes.length * 2));
+        rowTimes[rowKeys.size()] = rowTime;
+        rowKeys.add(rowKey);
+        rowCodes.add(codes);
+
+        if (bucketHandler != null) bucketHandler.closedBucket(rowKey, rowTime, codes);
+    }
+
+    /**
+     * Close the events file and write its binary copy and the grid catalog next to it.
+     * When carrying on from an earlier run, the new rows are added to the binary copy.
+     * @throws Exception any error.
+     */
+    public void close() throws Exception {
+        writer.close();
+        if (appending) {
+            EventStore.append(eventsFile, appendLength, appendModified, rowKeys, rowTimes, rowCodes);
+        }
+        else {
+            EventStore.write(eventsFile, rowKeys, rowTimes, rowCodes);
+        }
+        gridCatalog.write(catalogFile);
+    }
+
+    /**
+     * Get the time of the last event formatted.
+     * @return the time ordinal in milliseconds, or Long.MIN_VALUE if there are no events.
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * Get the number of events formatted with the last time, including the ones of
+     * an earlier run that this carries on from.
+     * @return the number of events.
+     */
+    public int getLastTimeCount() {
+        return lastTimeCount;
+    }
+
+    /**
+     * Get the ordinal of the last time bucket, which is still open.
+     * @return the bucket ordinal.
+     */
+    public long getLastBucket() {
+        return lastBucket;
+    }
+
+    /**
+     * Get the grid catalog of the cells seen so far.
+     * @return the grid catalog.
+     */
+    public GridCatalog getGridCatalog() {
+        return gridCatalog;
+    }
+
+    /**
+     * Get the grid dataset, with one row of event keys for each time bucket.
+     * @return the grid dataset.
+     */
+    public ArrayList<ArrayList<String>> getGridEvents() {
+        return fgDataset;
+    }
+
+
+    /** A raw row with its time bucket and event key worked out */
+    public static class ParsedEvent {
+
+        /** The raw date and time */
+        protected String dateStr;
+
+        /** Time ordinal in milliseconds, from TimeParser */
+        protected long time;
+
+        /** Ordinal of the time bucket */
+        protected long bucket;
+
+        /** Event key, from the grid location and magnitude band */
+        protected String key;
+
+        /** Event code of the key */
+        protected long code;
+    }
+
+
+    /**
+     * Works out the time bucket and event key of raw rows, without adding them to a
+     * bucket. It keeps no state between rows, but is not thread safe, so each thread
+     * needs its own.
+     */
+    public static class EventParser {
+
+        /** Size of a magnitude band */
+        protected double bandSize;
+
+        /** Separator between the date and time in the raw data */
+        protected String timeSep;
+
+        /** Time unit for the buckets */
+        protected String timeUnit;
+
+        /** Format for the grid location */
+        protected DecimalFormat df;
+
+        /** To parse the raw dates */
+        protected TimeParser timeParser;
+
+
+        /**
+         * Create a new instance of EventParser.
+         * @param args input variables - number of bands, band size, time separator and time unit.
+         */
+        public EventParser(String[] args) {
+            bandSize = Double.parseDouble(args[1]);
+            timeSep = args[2];
+            timeUnit = args[3];
+            df = new DecimalFormat("###");
+            timeParser = new TimeParser();
+        }
+
+        /**
+         * Parse a raw data row - date, latitude, longitude and magnitude.
+         * @param row the input column values for the row.
+         * @return the parsed event.
+         */
+        public ParsedEvent parse(DataRow row) {
+            return parse(row.getString(0), row.getDouble(1), row.getDouble(2), row.getDouble(3));
+        }
+
+        /**
+         * Parse a raw event.
+         * @param dateStr the raw date and time.
+         * @param lat latitude.
+         * @param lng longitude.
+         * @param value magnitude.
+         * @return the parsed event.
+         */
+        public ParsedEvent parse(String dateStr, double lat, double lng, double value) {
+            String gridKey;                                 //grid key
+            ParsedEvent event;                              //the parsed event
+
+            //find the time bucket, hours or days
+            if (!timeParser.parse(dateStr, timeSep)) {
+                throw new IllegalArgumentException("Invalid date: " + dateStr);
+            }
+            event = new ParsedEvent();
+            event.dateStr = dateStr;
+            event.time = timeParser.timeOrdinal();
+            event.bucket = timeParser.bucketOrdinal(timeUnit);
+
+            //create the key to indicate the event
+            gridKey = (df.format(lat) + DataConst.KEYSEP + df.format(lng));
+            event.key = (gridKey + DataConst.KEYSEP + (int) (value / bandSize));
+            event.code = EventCode.toCode(event.key);
+
+            return event;
+        }
+    }
+}
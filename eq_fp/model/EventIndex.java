@@ -0,0 +1,668 @@
+/*
+ * EventIndex.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import eq_fp.util.EventCode;
+import eq_fp.util.TimeParser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+
+/**
+ * Inverted index over the events file. Each event code is given an id, with a sorted
+ * list of the days it occurs on, and each day has the set of event ids that occur on it.
+ * Days are numbered in time order, so a time window is a range of day numbers that
+ * can be found with a binary search. The order the days were read in is also kept,
+ * so the days can still be processed in the order of the events file, which may
+ * be newest first.
+ */
+public class EventIndex {
+
+    /** Date key for each day */
+    protected ArrayList<String> dayKeys;
+
+    /** Day number for each date key */
+    protected HashMap<String, Integer> dayNumbers;
+
+    /** Time in milliseconds for each day, sorted */
+    protected long[] dayTimes;
+
+    /** Day number of each day, in the order the days were read */
+    protected int[] readOrder;
+
+    /** Position of each day in the order the days were read */
+    protected int[] readPositions;
+
+    /** Event ids for each day, in the order they were read */
+    protected int[][] dayEvents;
+
+    /** Distinct event ids for each day as a compact set */
+    protected EventSet[] daySets;
+
+    /** Event ids that are repeated on each day, once for each extra time they occur */
+    protected int[][] dayRepeats;
+
+    /** Event code for each event id */
+    protected EventSymbols symbols;
+
+    /** Sorted day numbers for each event id */
+    protected int[][] eventDays;
+
+    /** Checksum of the date keys and event keys, to identify the data */
+    protected long checksum;
+
+    /** SHA-256 digest of the date keys and event keys, once it is calculated */
+    protected byte[] digest;
+
+    /** Grid catalog that the events were formatted with, if known */
+    protected GridCatalog gridCatalog;
+
+    /** Sorted event ids of each cluster that has been looked up */
+    protected ConcurrentHashMap<EventCluster, int[]> clusterIds;
+
+    /** Co-occurrence counts of the events over the days, once they are counted */
+    protected CooccurrenceMatrix cooccurrence;
+
+
+    /**
+     * Create a new instance of EventIndex.
+     * @param dataRows list of event data rows, as read from the events file.
+     * @throws ParseException if a date key cannot be read.
+     */
+    public EventIndex(LinkedHashMap<String, ArrayList<String>> dataRows) throws ParseException {
+        this(new ArrayList<>(dataRows.keySet()), toCodes(dataRows));
+    }
+
+    /**
+     * Create a new instance of EventIndex.
+     * @param dateKeys date key for each day. The keys should be unique.
+     * @param dayCodes event codes for each day, in the order they were read.
+     * @throws ParseException if a date key cannot be read.
+     */
+    public EventIndex(ArrayList<String> dateKeys, ArrayList<long[]> dayCodes) throws ParseException {
+        this(dateKeys, keyTimes(dateKeys), dayCodes);
+    }
+
+    /**
+     * Create a new instance of EventIndex, when the time of each date key is known.
+     * @param dateKeys date key for each day. The keys should be unique.
+     * @param keyTimes time in milliseconds for each date key.
+     * @param dayCodes event codes for each day, in the order they were read.
+     */
+    public EventIndex(ArrayList<String> dateKeys, long[] keyTimes, ArrayList<long[]> dayCodes) {
+        int i, j;
+        int day;                                            //day number
+        int[] dayCount;                                     //number of days for each event
+        Integer[] order;                                    //input positions in time order
+        long[] codes;                                       //event codes for a day
+        int[][] dayIds;                                     //sorted distinct event ids for each day
+
+        //the rows are not always in time order, so sort the dates first
+        order = new Integer[dateKeys.size()];
+        for (i = 0; i < dateKeys.size(); i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(pos -> keyTimes[pos]));
+
+        dayKeys = new ArrayList<>(dateKeys.size());
+        dayNumbers = new HashMap<>();
+        dayTimes = new long[dateKeys.size()];
+        readOrder = new int[dateKeys.size()];
+        readPositions = new int[dateKeys.size()];
+        dayEvents = new int[dateKeys.size()][];
+        daySets = new EventSet[dateKeys.size()];
+        clusterIds = new ConcurrentHashMap<>();
+        cooccurrence = null;
+        dayRepeats = new int[dateKeys.size()][];
+        dayIds = new int[dateKeys.size()][];
+        symbols = new EventSymbols();
+
+        for (day = 0; day < order.length; day++) {
+            dayKeys.add(dateKeys.get(order[day]));
+            dayNumbers.put(dayKeys.get(day), day);
+            dayTimes[day] = keyTimes[order[day]];
+            readOrder[order[day]] = day;
+            readPositions[day] = order[day];
+
+            codes = dayCodes.get(order[day]);
+            dayEvents[day] = new int[codes.length];
+            for (i = 0; i < codes.length; i++) {
+                dayEvents[day][i] = symbols.intern(codes[i]);
+            }
+            dayIds[day] = EventSet.sortedUnique(dayEvents[day]);
+            daySets[day] = new EventSet(dayIds[day]);
+            dayRepeats[day] = repeats(dayEvents[day], dayIds[day].length);
+        }
+
+        //days are visited in order, so each posting list is already sorted
+        dayCount = new int[symbols.size()];
+        for (day = 0; day < dayIds.length; day++) {
+            for (int dayId : dayIds[day]) {
+                dayCount[dayId]++;
+            }
+        }
+
+        eventDays = new int[symbols.size()][];
+        for (i = 0; i < eventDays.length; i++) {
+            eventDays[i] = new int[dayCount[i]];
+            dayCount[i] = 0;
+        }
+
+        for (day = 0; day < dayIds.length; day++) {
+            for (int dayId : dayIds[day]) {
+                j = dayCount[dayId]++;
+                eventDays[dayId][j] = day;
+            }
+        }
+
+        checksum = checksum();
+    }
+
+    /**
+     * Get the event ids that occur more than once.
+     * @param ids the event ids.
+     * @param numDistinct number of distinct ids.
+     * @return the repeated ids, once for each extra time they occur.
+     */
+    private static int[] repeats(int[] ids, int numDistinct) {
+        int j;
+        int[] sorted;                                       //sorted ids
+        int[] repeated;                                     //repeated ids
+
+        if (numDistinct == ids.length) return new int[0];
+
+        sorted = ids.clone();
+        Arrays.sort(sorted);
+        repeated = new int[ids.length - numDistinct];
+        j = 0;
+        for (int i = 1; i < sorted.length; i++) {
+            if (sorted[i] == sorted[i - 1]) repeated[j++] = sorted[i];
+        }
+
+        return repeated;
+    }
+
+    /**
+     * Get the time of each date key.
+     * @param dateKeys the date keys.
+     * @return time in milliseconds for each key.
+     * @throws ParseException if a date key cannot be read.
+     */
+    private static long[] keyTimes(ArrayList<String> dateKeys) throws ParseException {
+        long[] keyTimes;                                    //time for each key
+        TimeParser timeParser;                              //to read the date keys
+
+        keyTimes = new long[dateKeys.size()];
+        timeParser = new TimeParser();
+        for (int i = 0; i < dateKeys.size(); i++) {
+            keyTimes[i] = timeParser.keyTime(dateKeys.get(i));
+        }
+
+        return keyTimes;
+    }
+
+    /**
+     * Calculate a checksum over the days and their events.
+     * @return the checksum value.
+     */
+    private long checksum() {
+        CRC32 crc;                                          //checksum
+        ByteBuffer buffer;                                  //code bytes
+
+        crc = new CRC32();
+        buffer = ByteBuffer.allocate(Long.BYTES);
+        for (int day = 0; day < dayKeys.size(); day++) {
+            crc.update(dayKeys.get(day).getBytes(StandardCharsets.UTF_8));
+            for (int id : dayEvents[day]) {
+                buffer.clear();
+                buffer.putLong(symbols.code(id));
+                crc.update(buffer.array());
+            }
+        }
+
+        return crc.getValue();
+    }
+
+    /**
+     * Calculate a SHA-256 digest over the days and their events. The number of events
+     * on each day is included, so the days cannot run into each other.
+     * @return the digest.
+     */
+    private byte[] digest() {
+        MessageDigest sha;                                  //digest
+        ByteBuffer buffer;                                  //number bytes
+
+        try {
+            sha = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-256 is not available", ex);
+        }
+
+        buffer = ByteBuffer.allocate(Long.BYTES);
+        for (int day = 0; day < dayKeys.size(); day++) {
+            sha.update(dayKeys.get(day).getBytes(StandardCharsets.UTF_8));
+            buffer.clear();
+            buffer.putLong(dayEvents[day].length);
+            sha.update(buffer.array());
+            for (int id : dayEvents[day]) {
+                buffer.clear();
+                buffer.putLong(symbols.code(id));
+                sha.update(buffer.array());
+            }
+        }
+
+        return sha.digest();
+    }
+
+    /**
+     * Convert the text event keys in the data rows into event codes.
+     * @param dataRows list of event data rows.
+     * @return event codes for each row.
+     */
+    private static ArrayList<long[]> toCodes(LinkedHashMap<String, ArrayList<String>> dataRows) {
+        int i;
+        long[] codes;                                       //codes for a row
+        ArrayList<long[]> dayCodes;                         //codes for each row
+
+        dayCodes = new ArrayList<>(dataRows.size());
+        for (ArrayList<String> eventList : dataRows.values()) {
+            codes = new long[eventList.size()];
+            for (i = 0; i < codes.length; i++) {
+                codes[i] = EventCode.toCode(eventList.get(i));
+            }
+            dayCodes.add(codes);
+        }
+
+        return dayCodes;
+    }
+
+    /**
+     * Get the ids of the cluster events that are in the index. The ids are found
+     * once for each cluster.
+     * @param cluster the cluster.
+     * @return sorted event ids. These should not be changed.
+     */
+    public int[] clusterIds(EventCluster cluster) {
+        return clusterIds.computeIfAbsent(cluster, key -> {
+            int num = 0;
+            int[] ids = new int[key.size()];
+            for (int i = 0; i < key.size(); i++) {
+                ids[num] = symbols.id(key.code(i));
+                if (ids[num] >= 0) num++;
+            }
+            return EventSet.sortedUnique(Arrays.copyOf(ids, num));
+        });
+    }
+
+    /**
+     * Get the day numbers that have at least one event from the cluster.
+     * This is the union of the posting lists for the cluster events.
+     * @param cluster the cluster.
+     * @return sorted day numbers.
+     */
+    public int[] clusterDays(EventCluster cluster) {
+        return clusterDays(cluster, 0, dayKeys.size());
+    }
+
+    /**
+     * Get the day numbers in a range that have at least one event from the cluster.
+     * Each posting list is searched for the start of the range, so only days
+     * inside the range are visited.
+     * @param cluster the cluster.
+     * @param fromDay first day number in the range.
+     * @param toDay day number after the end of the range.
+     * @return sorted day numbers.
+     */
+    public int[] clusterDays(EventCluster cluster, int fromDay, int toDay) {
+        int i;
+        int[] days;                                         //matching days
+        int[] postings;                                     //days for an event
+        BitSet dayUnion;                                    //union of the posting lists
+
+        if (fromDay >= toDay) return new int[0];
+
+        dayUnion = new BitSet(toDay - fromDay);
+        for (int id : clusterIds(cluster)) {
+            postings = eventDays[id];
+            i = Arrays.binarySearch(postings, fromDay);
+            if (i < 0) i = -(i + 1);
+
+            for (; (i < postings.length) && (postings[i] < toDay); i++) {
+                dayUnion.set(postings[i] - fromDay);
+            }
+        }
+
+        days = new int[dayUnion.cardinality()];
+        i = 0;
+        for (int day = dayUnion.nextSetBit(0); day >= 0; day = dayUnion.nextSetBit(day + 1)) {
+            days[i++] = (day + fromDay);
+        }
+
+        return days;
+    }
+
+    /**
+     * Get the first day with a time at or after the start time.
+     * @param start start time in milliseconds.
+     * @return the day number, or the number of days if there is none.
+     */
+    public int firstDay(long start) {
+        int low, high, mid;                                 //search range
+
+        low = 0;
+        high = dayTimes.length;
+        while (low < high) {
+            mid = ((low + high) >>> 1);
+            if (dayTimes[mid] < start) low = (mid + 1);
+            else high = mid;
+        }
+
+        return low;
+    }
+
+    /**
+     * Get the day after the last day with a time at or before the end time.
+     * @param end end time in milliseconds.
+     * @return the day number after the range.
+     */
+    public int endDay(long end) {
+        int low, high, mid;                                 //search range
+
+        low = 0;
+        high = dayTimes.length;
+        while (low < high) {
+            mid = ((low + high) >>> 1);
+            if (dayTimes[mid] <= end) low = (mid + 1);
+            else high = mid;
+        }
+
+        return low;
+    }
+
+    /**
+     * Create the data row of event keys for a day.
+     * @param day the day number.
+     * @return list of event keys, in the order they were read.
+     */
+    public ArrayList<String> dayRow(int day) {
+        ArrayList<String> eventList;                        //events for the day
+
+        eventList = new ArrayList<>();
+        for (int id : dayEvents[day]) {
+            eventList.add(symbols.key(id));
+        }
+
+        return eventList;
+    }
+
+    /**
+     * Get the day number for the date key.
+     * @param dateKey the date key from the events file.
+     * @return the day number, or -1 if not present.
+     */
+    public int dayNumber(String dateKey) {
+        Integer day;                                        //day number
+
+        day = dayNumbers.get(dateKey);
+        return ((day != null) ? day : -1);
+    }
+
+    /**
+     * Get the id for the event key.
+     * @param eventKey the event key.
+     * @return the event id, or -1 if not present.
+     */
+    public int eventId(String eventKey) {
+        try {
+            return symbols.id(eventKey);
+        }
+        catch (NumberFormatException nfex) {
+            //not a valid key, so cannot be in the events
+            return -1;
+        }
+    }
+
+    /**
+     * Get the event key for an id.
+     * @param id the event id.
+     * @return the event key.
+     */
+    public String eventKey(int id) {
+        return symbols.key(id);
+    }
+
+    /**
+     * Get the event code for an id.
+     * @param id the event id.
+     * @return the event code.
+     */
+    public long eventCode(int id) {
+        return symbols.code(id);
+    }
+
+    /**
+     * Get the symbol table relating event ids to event codes.
+     * @return the symbol table.
+     */
+    public EventSymbols getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Get the sorted day numbers that an event occurs on.
+     * @param id the event id.
+     * @return the posting list for the event.
+     */
+    public int[] eventDays(int id) {
+        return eventDays[id];
+    }
+
+    /**
+     * Get the day numbers that an event occurs on, in the order the days were read.
+     * @param id the event id.
+     * @return the day numbers.
+     */
+    public int[] eventDaysRead(int id) {
+        Integer[] days;                                     //day numbers to sort
+        int[] sorted;                                       //days in read order
+
+        days = new Integer[eventDays[id].length];
+        for (int i = 0; i < days.length; i++) {
+            days[i] = eventDays[id][i];
+        }
+        Arrays.sort(days, Comparator.comparingInt(day -> readPositions[day]));
+
+        sorted = new int[days.length];
+        for (int i = 0; i < days.length; i++) {
+            sorted[i] = days[i];
+        }
+
+        return sorted;
+    }
+
+    /**
+     * Get the day number of a day, by the order the days were read.
+     * @param pos position of the day in the order the days were read.
+     * @return the day number.
+     */
+    public int readDay(int pos) {
+        return readOrder[pos];
+    }
+
+    /**
+     * Get the event ids for a day, in the order they were read.
+     * @param day the day number.
+     * @return the event ids.
+     */
+    public int[] dayEvents(int day) {
+        return dayEvents[day];
+    }
+
+    /**
+     * Get the distinct event ids for a day as a set.
+     * @param day the day number.
+     * @return the set of event ids.
+     */
+    public EventSet daySet(int day) {
+        return daySets[day];
+    }
+
+    /**
+     * Count the events on a day that are in a set, including each time an event is
+     * repeated on the day.
+     * @param day the day number.
+     * @param events the set of event ids.
+     * @return the number of matching events.
+     */
+    public int matchCount(int day, EventSet events) {
+        int count;                                          //matching events
+
+        count = daySets[day].intersectionCount(events);
+        for (int id : dayRepeats[day]) {
+            if (events.contains(id)) count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the co-occurrence counts of the events over the days, with the same event ids
+     * as the index. They are counted the first time they are asked for, in parallel on
+     * the common pool.
+     * @return the co-occurrence counts.
+     */
+    public synchronized CooccurrenceMatrix cooccurrence() {
+        if (cooccurrence == null) {
+            cooccurrence = CooccurrenceMatrix.count(dayEvents, symbols.size(), ForkJoinPool.commonPool());
+        }
+
+        return cooccurrence;
+    }
+
+    /**
+     * Get the event keys that occur most often on the same days as an event.
+     * @param eventKey the event key.
+     * @param n the number of events to find.
+     * @return the event keys, most often first, or an empty list if the event is not in the index.
+     */
+    public ArrayList<String> topNeighbours(String eventKey, int n) {
+        int id;                                             //event id
+        ArrayList<String> keys;                             //neighbour keys
+
+        keys = new ArrayList<>();
+        id = eventId(eventKey);
+        if (id < 0) return keys;
+
+        for (int neighbour : cooccurrence().topNeighbours(id, n)) {
+            keys.add(eventKey(neighbour));
+        }
+
+        return keys;
+    }
+
+    /**
+     * Get the date key for a day.
+     * @param day the day number.
+     * @return the date key.
+     */
+    public String dayKey(int day) {
+        return dayKeys.get(day);
+    }
+
+    /**
+     * Get the time for a day.
+     * @param day the day number.
+     * @return the time in milliseconds.
+     */
+    public long dayTime(int day) {
+        return dayTimes[day];
+    }
+
+    /**
+     * Get the number of days.
+     * @return the number of days.
+     */
+    public int numDays() {
+        return dayKeys.size();
+    }
+
+    /**
+     * Get the checksum of the indexed data. Two indexes with the same checksum
+     * were most likely created from the same events.
+     * @return the checksum value.
+     */
+    public long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * Get the SHA-256 digest of the indexed data, which is calculated the first time it
+     * is asked for. Unlike the checksum, two indexes with the same digest can be taken to
+     * hold the same events. The array should not be changed.
+     * @return the digest.
+     */
+    public synchronized byte[] getDigest() {
+        if (digest == null) {
+            digest = digest();
+        }
+
+        return digest;
+    }
+
+    /**
+     * Get the number of distinct events.
+     * @return the number of events.
+     */
+    public int numEvents() {
+        return symbols.size();
+    }
+
+    /**
+     * Get the grid catalog category of an event.
+     * @param id the event id.
+     * @return the category id, or -1 if there is no catalog or the event is not in it.
+     */
+    public int categoryId(int id) {
+        if (gridCatalog == null) return -1;
+        return gridCatalog.categoryId(symbols.code(id));
+    }
+
+    /**
+     * Set the grid catalog that the events were formatted with.
+     * @param gridCatalog the grid catalog.
+     */
+    public void setGridCatalog(GridCatalog gridCatalog) {
+        this.gridCatalog = gridCatalog;
+    }
+
+    /**
+     * Get the grid catalog that the events were formatted with.
+     * @return the grid catalog, or null if it is not known.
+     */
+    public GridCatalog getGridCatalog() {
+        return gridCatalog;
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * EventSet.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import java.util.Arrays;
+
+
+/**
+ * A compact, unchangeable set of event ids. The ids are split into blocks by their
+ * top 16 bits, and each block is stored as a sorted array of its low 16 bits when it
+ * is sparse, or as a bitmap of 1024 longs when it is dense. A day only has a few
+ * events out of all of the event ids, so its set stays small, and a membership test
+ * or an intersection only looks at the blocks that both sets have.
+ */
+public class EventSet {
+
+    /** Largest number of ids in an array block, above which a bitmap is smaller */
+    public static final int ARRAYMAX = 4096;
+
+    /** Number of longs in a bitmap block */
+    private static final int BITMAPSIZE = (1 << 16) / Long.SIZE;
+
+    /** An empty set */
+    public static final EventSet EMPTY = new EventSet(new int[0]);
+
+
+    /** Top 16 bits of the ids in each block, sorted */
+    protected char[] keys;
+
+    /** Sorted low 16 bits of the ids in each block, or null if the block is a bitmap */
+    protected char[][] arrays;
+
+    /** Bitmap of the low 16 bits in each block, or null if the block is an array */
+    protected long[][] bitmaps;
+
+    /** Number of ids in each block */
+    protected int[] counts;
+
+    /** Number of ids */
+    protected int cardinality;
+
+
+    /**
+     * Create a new instance of EventSet.
+     * @param sortedIds the ids, sorted with no repeats and none negative.
+     */
+    protected EventSet(int[] sortedIds) {
+        int i, j;
+        int numBlocks;                                      //number of blocks
+        int block;                                          //block number
+        int end;                                            //end of the block ids
+
+        numBlocks = 0;
+        for (i = 0; i < sortedIds.length; i++) {
+            if ((i == 0) || ((sortedIds[i] >>> 16) != (sortedIds[i - 1] >>> 16))) numBlocks++;
+        }
+
+        keys = new char[numBlocks];
+        arrays = new char[numBlocks][];
+        bitmaps = new long[numBlocks][];
+        counts = new int[numBlocks];
+        cardinality = sortedIds.length;
+
+        block = 0;
+        for (i = 0; i < sortedIds.length; i = end) {
+            end = i + 1;
+            while ((end < sortedIds.length) && ((sortedIds[end] >>> 16) == (sortedIds[i] >>> 16))) end++;
+
+            keys[block] = (char) (sortedIds[i] >>> 16);
+            counts[block] = (end - i);
+            if (counts[block] <= ARRAYMAX) {
+                arrays[block] = new char[end - i];
+                for (j = i; j < end; j++) {
+                    arrays[block][j - i] = (char) sortedIds[j];
+                }
+            }
+            else {
+                bitmaps[block] = new long[BITMAPSIZE];
+                for (j = i; j < end; j++) {
+                    bitmaps[block][(sortedIds[j] & 0xFFFF) >>> 6] |= (1L << sortedIds[j]);
+                }
+            }
+            block++;
+        }
+    }
+
+    /**
+     * Create a set of event ids.
+     * @param ids the ids, in any order and with any repeats. None should be negative.
+     * @return the set.
+     */
+    public static EventSet of(int[] ids) {
+        return new EventSet(sortedUnique(ids));
+    }
+
+    /**
+     * Get the ids sorted and without repeats.
+     * @param ids the ids.
+     * @return a new sorted array of the distinct ids.
+     */
+    public static int[] sortedUnique(int[] ids) {
+        int j;
+        int[] sorted;                                       //sorted ids
+
+        sorted = ids.clone();
+        Arrays.sort(sorted);
+        j = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if ((i == 0) || (sorted[i] != sorted[j - 1])) sorted[j++] = sorted[i];
+        }
+
+        return ((j < sorted.length) ? Arrays.copyOf(sorted, j) : sorted);
+    }
+
+    /**
+     * Get the number of ids.
+     * @return the number of ids.
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Return true if the set holds an id.
+     * @param id the event id.
+     * @return true if the id is in the set.
+     */
+    public boolean contains(int id) {
+        int block;                                          //block number
+
+        if (id < 0) return false;
+
+        block = Arrays.binarySearch(keys, (char) (id >>> 16));
+        if (block < 0) return false;
+
+        if (arrays[block] != null) {
+            return (Arrays.binarySearch(arrays[block], (char) id) >= 0);
+        }
+        return ((bitmaps[block][(id & 0xFFFF) >>> 6] & (1L << id)) != 0);
+    }
+
+    /**
+     * Count the ids that are in both this set and another one.
+     * @param other the other set.
+     * @return the size of the intersection.
+     */
+    public int intersectionCount(EventSet other) {
+        int i, j;
+        int count;                                          //ids in both
+
+        count = 0;
+        i = 0;
+        j = 0;
+        while ((i < keys.length) && (j < other.keys.length)) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            }
+            else if (keys[i] > other.keys[j]) {
+                j++;
+            }
+            else {
+                count += blockIntersection(this, i, other, j);
+                i++;
+                j++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Count the ids that are in two blocks with the same key.
+     * @param set1 the first set.
+     * @param block1 the block in the first set.
+     * @param set2 the second set.
+     * @param block2 the block in the second set.
+     * @return the number of ids in both blocks.
+     */
+    private static int blockIntersection(EventSet set1, int block1, EventSet set2, int block2) {
+        int i, j;
+        int count;                                          //ids in both
+        char[] array1, array2;                              //array blocks
+        long[] bitmap1, bitmap2;                            //bitmap blocks
+
+        array1 = set1.arrays[block1];
+        array2 = set2.arrays[block2];
+        bitmap1 = set1.bitmaps[block1];
+        bitmap2 = set2.bitmaps[block2];
+        count = 0;
+
+        if ((bitmap1 != null) && (bitmap2 != null)) {
+            for (i = 0; i < BITMAPSIZE; i++) {
+                count += Long.bitCount(bitmap1[i] & bitmap2[i]);
+            }
+        }
+        else if (bitmap1 != null) {
+            for (char low : array2) {
+                if ((bitmap1[low >>> 6] & (1L << low)) != 0) count++;
+            }
+        }
+        else if (bitmap2 != null) {
+            for (char low : array1) {
+                if ((bitmap2[low >>> 6] & (1L << low)) != 0) count++;
+            }
+        }
+        else {
+            i = 0;
+            j = 0;
+            while ((i < array1.length) && (j < array2.length)) {
+                if (array1[i] < array2[j]) {
+                    i++;
+                }
+                else if (array1[i] > array2[j]) {
+                    j++;
+                }
+                else {
+                    count++;
+                    i++;
+                    j++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the ids in the set.
+     * @return a new array of the ids, sorted.
+     */
+    public int[] toArray() {
+        int pos;                                            //position in the ids
+        int high;                                           //top bits of the block
+        int[] ids;                                          //the ids
+
+        ids = new int[cardinality];
+        pos = 0;
+        for (int block = 0; block < keys.length; block++) {
+            high = (keys[block] << 16);
+            if (arrays[block] != null) {
+                for (char low : arrays[block]) {
+                    ids[pos++] = (high | low);
+                }
+            }
+            else {
+                for (int i = 0; i < BITMAPSIZE; i++) {
+                    for (long word = bitmaps[block][i]; word != 0; word &= (word - 1)) {
+                        ids[pos++] = (high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    }
+                }
+            }
+        }
+
+        return ids;
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * EventStore.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import eq_fp.util.TimeParser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+
+
+/**
+ * Binary copy of the events file, written next to it when the data is formatted.
+ * The file has a header, the time of each day, the packed event codes of every day,
+ * the offsets of each day into the codes and the date keys. It is read in one go and
+ * copied out with bulk gets, so no text is parsed. The file is closed once it is read,
+ * so rows can be added to it, which writes it again. The header holds the size and
+ * modified time of the text events file, and the binary file is only used while
+ * they still match, so the text file can be edited or exported as before. The day
+ * times are in the local time zone, so the header also holds the time zone id, and
+ * the file is not used in a different zone. When rows are added to the text file,
+ * they can be added to the binary file as well.
+ */
+public class EventStore {
+
+    /** Extension added to the events file name for the binary file */
+    public static final String FILEEXT = ".bin";
+
+    /** Marks an events binary file - EQEV */
+    public static final int MAGIC = 0x45514556;
+
+    /** File format version */
+    public static final int VERSION = 2;
+
+    /** Size of the header in bytes, before the time zone id */
+    private static final int HEADERSIZE = 32;
+
+
+    /**
+     * Get the binary file for an events file.
+     * @param eventsFile the events file.
+     * @return the binary file.
+     */
+    public static String storeFile(String eventsFile) {
+        return (eventsFile + FILEEXT);
+    }
+
+    /**
+     * Write the binary file for an events file. The text events file should already
+     * be written and closed.
+     * @param eventsFile the text events file.
+     * @param dateKeys date key for each row of the events file.
+     * @param keyTimes time in milliseconds for each date key.
+     * @param dayCodes event codes for each row of the events file.
+     * @throws Exception any error.
+     */
+    public static void write(String eventsFile, ArrayList<String> dateKeys, long[] keyTimes,
+                             ArrayList<long[]> dayCodes) throws Exception {
+        int i;
+        int offset;                                         //offset into the codes or keys
+        byte[][] keyBytes;                                  //bytes of each date key
+        byte[] zoneBytes;                                   //bytes of the time zone id
+        File textFile;                                      //text events file
+        DataOutputStream writer;                            //output file
+
+        try {
+            textFile = new File(eventsFile);
+            keyBytes = new byte[dateKeys.size()][];
+            for (i = 0; i < dateKeys.size(); i++) {
+                keyBytes[i] = dateKeys.get(i).getBytes(StandardCharsets.UTF_8);
+            }
+            zoneBytes = TimeParser.zoneId().getBytes(StandardCharsets.UTF_8);
+
+            writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(storeFile(eventsFile))));
+            try {
+                //header
+                writer.writeInt(MAGIC);
+                writer.writeInt(VERSION);
+                writer.writeLong(textFile.length());
+                writer.writeLong(textFile.lastModified());
+                offset = 0;
+                for (long[] codes : dayCodes) {
+                    offset += codes.length;
+                }
+                writer.writeInt(dateKeys.size());
+                writer.writeInt(offset);
+                writer.writeInt(zoneBytes.length);
+                writer.write(zoneBytes);
+                writer.write(new byte[zonePadding(zoneBytes.length)]);
+
+                //longs first, so they stay aligned
+                for (i = 0; i < dateKeys.size(); i++) {
+                    writer.writeLong(keyTimes[i]);
+                }
+                for (long[] codes : dayCodes) {
+                    for (long code : codes) {
+                        writer.writeLong(code);
+                    }
+                }
+
+                //offsets of each day into the codes, then into the key bytes
+                offset = 0;
+                writer.writeInt(offset);
+                for (long[] codes : dayCodes) {
+                    offset += codes.length;
+                    writer.writeInt(offset);
+                }
+                offset = 0;
+                writer.writeInt(offset);
+                for (byte[] key : keyBytes) {
+                    offset += key.length;
+                    writer.writeInt(offset);
+                }
+                for (byte[] key : keyBytes) {
+                    writer.write(key);
+                }
+            }
+            finally {
+                writer.close();
+            }
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the number of bytes written after the time zone id, so the longs that follow
+     * the header stay aligned.
+     * @param zoneLength length of the time zone id in bytes.
+     * @return the number of bytes.
+     */
+    private static int zonePadding(int zoneLength) {
+        return ((Long.BYTES - ((HEADERSIZE + Integer.BYTES + zoneLength) % Long.BYTES)) % Long.BYTES);
+    }
+
+    /**
+     * Add rows to the binary file for an events file, after they have been added to the
+     * text events file. The rows already in the binary file are read back and written
+     * again with the new rows, as the codes and keys of every day are each kept together.
+     * If there is no binary file for the text file as it was before, it is removed, and
+     * the text file is read instead.
+     * @param eventsFile the text events file.
+     * @param textLength size of the text events file before the rows were added.
+     * @param textModified modified time of the text events file before the rows were added.
+     * @param dateKeys date key for each new row.
+     * @param keyTimes time in milliseconds for each new date key.
+     * @param dayCodes event codes for each new row.
+     * @return true if the rows were added, or false if the binary file was removed.
+     * @throws Exception any error.
+     */
+    public static boolean append(String eventsFile, long textLength, long textModified, ArrayList<String> dateKeys,
+                                 long[] keyTimes, ArrayList<long[]> dayCodes) throws Exception {
+        long[] allTimes;                                    //time for each date key
+        StoreRows rows;                                     //rows already in the binary file
+
+        try {
+            rows = readRows(eventsFile, textLength, textModified);
+            if (rows == null) {
+                Files.deleteIfExists(Paths.get(storeFile(eventsFile)));
+                return false;
+            }
+
+            allTimes = Arrays.copyOf(rows.keyTimes, (rows.dateKeys.size() + dateKeys.size()));
+            System.arraycopy(keyTimes, 0, allTimes, rows.dateKeys.size(), dateKeys.size());
+            rows.dateKeys.addAll(dateKeys);
+            rows.dayCodes.addAll(dayCodes);
+            write(eventsFile, rows.dateKeys, allTimes, rows.dayCodes);
+
+            return true;
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Read the binary file for an events file into an event index.
+     * @param eventsFile the text events file.
+     * @return index of the events, or null if there is no binary file or it does not
+     * match the text file or the time zone.
+     * @throws Exception any error.
+     */
+    public static EventIndex read(String eventsFile) throws Exception {
+        int i;
+        long[] keyTimes;                                    //time of each date key
+        File textFile;                                      //text events file
+        StoreRows rows;                                     //rows of the binary file
+        LinkedHashMap<String, long[]> dayCodes;             //codes for each date
+        LinkedHashMap<String, Long> dayTimes;               //time for each date
+
+        try {
+            textFile = new File(eventsFile);
+            rows = readRows(eventsFile, textFile.length(), textFile.lastModified());
+            if (rows == null) return null;
+
+            //a repeated date replaces the earlier row, as it does when the text is read
+            dayCodes = new LinkedHashMap<>();
+            dayTimes = new LinkedHashMap<>();
+            for (i = 0; i < rows.dateKeys.size(); i++) {
+                dayCodes.put(rows.dateKeys.get(i), rows.dayCodes.get(i));
+                dayTimes.put(rows.dateKeys.get(i), rows.keyTimes[i]);
+            }
+
+            keyTimes = new long[dayTimes.size()];
+            i = 0;
+            for (Long time : dayTimes.values()) {
+                keyTimes[i++] = time;
+            }
+
+            return new EventIndex(new ArrayList<>(dayCodes.keySet()), keyTimes, new ArrayList<>(dayCodes.values()));
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Read the rows of the binary file for an events file, in the order they were written.
+     * @param eventsFile the text events file.
+     * @param textLength size the text events file should have.
+     * @param textModified modified time the text events file should have.
+     * @return the rows, or null if there is no binary file, it does not match the
+     * text file or the time zone, or it is cut short.
+     * @throws Exception any error.
+     */
+    private static StoreRows readRows(String eventsFile, long textLength, long textModified) throws Exception {
+        int i;
+        int numDays;                                        //number of rows
+        int numCodes;                                       //number of event codes
+        int[] codeOffsets;                                  //offset of each day into the codes
+        int[] keyOffsets;                                   //offset of each key into the key bytes
+        long[] allCodes;                                    //every event code
+        byte[] keyBytes;                                    //bytes of the date keys
+        byte[] zoneBytes;                                   //bytes of the time zone id
+        File binFile;                                       //binary events file
+        StoreRows rows;                                     //the rows
+        ByteBuffer buffer;                                  //binary file contents
+
+        try {
+            binFile = new File(storeFile(eventsFile));
+            if (!binFile.exists() || (binFile.length() < HEADERSIZE)) return null;
+
+            buffer = ByteBuffer.wrap(Files.readAllBytes(Paths.get(binFile.getPath())));
+
+            if ((buffer.getInt() != MAGIC) || (buffer.getInt() != VERSION)) return null;
+            if ((buffer.getLong() != textLength) || (buffer.getLong() != textModified)) {
+                return null;
+            }
+            numDays = buffer.getInt();
+            numCodes = buffer.getInt();
+
+            //the day times are only right in the time zone they were written in
+            zoneBytes = TimeParser.zoneId().getBytes(StandardCharsets.UTF_8);
+            if (buffer.getInt() != zoneBytes.length) return null;
+            for (byte zoneByte : zoneBytes) {
+                if (buffer.get() != zoneByte) return null;
+            }
+            buffer.position(buffer.position() + zonePadding(zoneBytes.length));
+
+            rows = new StoreRows();
+            rows.keyTimes = new long[numDays];
+            allCodes = new long[numCodes];
+            codeOffsets = new int[numDays + 1];
+            keyOffsets = new int[numDays + 1];
+            buffer.asLongBuffer().get(rows.keyTimes);
+            buffer.position(buffer.position() + (numDays * Long.BYTES));
+            buffer.asLongBuffer().get(allCodes);
+            buffer.position(buffer.position() + (numCodes * Long.BYTES));
+            buffer.asIntBuffer().get(codeOffsets);
+            buffer.position(buffer.position() + ((numDays + 1) * Integer.BYTES));
+            buffer.asIntBuffer().get(keyOffsets);
+            buffer.position(buffer.position() + ((numDays + 1) * Integer.BYTES));
+            keyBytes = new byte[keyOffsets[numDays]];
+            buffer.get(keyBytes);
+
+            rows.dateKeys = new ArrayList<>(numDays);
+            rows.dayCodes = new ArrayList<>(numDays);
+            for (i = 0; i < numDays; i++) {
+                rows.dateKeys.add(new String(keyBytes, keyOffsets[i], (keyOffsets[i + 1] - keyOffsets[i]),
+                        StandardCharsets.UTF_8));
+                rows.dayCodes.add(Arrays.copyOfRange(allCodes, codeOffsets[i], codeOffsets[i + 1]));
+            }
+
+            return rows;
+        }
+        catch (BufferUnderflowException ex) {
+            //the file was cut short, so it is out of date
+            return null;
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+
+    /** The rows of a binary events file */
+    private static class StoreRows {
+
+        /** Date key of each row */
+        protected ArrayList<String> dateKeys;
+
+        /** Time in milliseconds of each date key */
+        protected long[] keyTimes;
+
+        /** Event codes of each row */
+        protected ArrayList<long[]> dayCodes;
+    }
+}
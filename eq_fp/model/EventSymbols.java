@@ -0,0 +1,168 @@
+/*
+ * EventSymbols.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import eq_fp.util.EventCode;
+
+import java.util.Arrays;
+
+
+/**
+ * Symbol table that gives each event code a dense id, starting from 0.
+ * The ids can index primitive arrays and bitsets, and each id can be turned back
+ * into its code or its text key. Codes are kept in an open addressing hash table,
+ * so no objects are created for each event.
+ */
+public class EventSymbols {
+
+    /** Marks an empty slot in the hash table */
+    private static final int EMPTY = -1;
+
+
+    /** Code for each id */
+    protected long[] codes;
+
+    /** Number of ids */
+    protected int size;
+
+    /** Hash table of ids, indexed by code hash */
+    protected int[] table;
+
+
+    /**
+     * Create a new instance of EventSymbols.
+     */
+    public EventSymbols() {
+        codes = new long[64];
+        size = 0;
+        table = new int[128];
+        Arrays.fill(table, EMPTY);
+    }
+
+    /**
+     * Return the id for the event code, adding it if it is new.
+     * @param code the event code.
+     * @return the event id.
+     */
+    public int intern(long code) {
+        int slot;                                           //hash table slot
+
+        slot = slot(code);
+        if (table[slot] != EMPTY) return table[slot];
+
+        if (size == codes.length) {
+            codes = Arrays.copyOf(codes, (size * 2));
+        }
+        codes[size] = code;
+        table[slot] = size;
+        size++;
+
+        //keep the table at most half full
+        if ((size * 2) > table.length) rehash();
+
+        return (size - 1);
+    }
+
+    /**
+     * Return the id for the event key, adding it if it is new.
+     * @param eventKey the event key.
+     * @return the event id.
+     */
+    public int intern(String eventKey) {
+        return intern(EventCode.toCode(eventKey));
+    }
+
+    /**
+     * Get the id for the event code.
+     * @param code the event code.
+     * @return the event id, or -1 if not present.
+     */
+    public int id(long code) {
+        return table[slot(code)];
+    }
+
+    /**
+     * Get the id for the event key.
+     * @param eventKey the event key.
+     * @return the event id, or -1 if not present.
+     */
+    public int id(String eventKey) {
+        return id(EventCode.toCode(eventKey));
+    }
+
+    /**
+     * Get the code for an id.
+     * @param id the event id.
+     * @return the event code.
+     */
+    public long code(int id) {
+        return codes[id];
+    }
+
+    /**
+     * Get the text key for an id.
+     * @param id the event id.
+     * @return the event key.
+     */
+    public String key(int id) {
+        return EventCode.toKey(codes[id]);
+    }
+
+    /**
+     * Get the number of ids.
+     * @return the number of ids.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Find the slot for a code, which holds its id or is empty.
+     * @param code the event code.
+     * @return the slot.
+     */
+    private int slot(long code) {
+        int slot;                                           //hash table slot
+
+        slot = (hash(code) & (table.length - 1));
+        while ((table[slot] != EMPTY) && (codes[table[slot]] != code)) {
+            slot = ((slot + 1) & (table.length - 1));
+        }
+
+        return slot;
+    }
+
+    /** Double the hash table size and add the ids again */
+    private void rehash() {
+        int slot;                                           //hash table slot
+
+        table = new int[table.length * 2];
+        Arrays.fill(table, EMPTY);
+        for (int id = 0; id < size; id++) {
+            slot = (hash(codes[id]) & (table.length - 1));
+            while (table[slot] != EMPTY) {
+                slot = ((slot + 1) & (table.length - 1));
+            }
+            table[slot] = id;
+        }
+    }
+
+    /**
+     * Mix the bits of a code for the hash table.
+     * @param code the event code.
+     * @return the hash value.
+     */
+    private static int hash(long code) {
+        code *= 0x9E3779B97F4A7C15L;
+        return (int) (code ^ (code >>> 32));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * FeedSource.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+
+/**
+ * Opens a live feed of raw catalogue rows, in the same form as a dataset file, as a
+ * stream that DatasetManager can read as the rows arrive. The feed can be a file that
+ * another process adds rows to, or a socket on the local machine, as a stand-in for a
+ * live service.
+ */
+public class FeedSource {
+
+    /** Default time in milliseconds between checks for new rows in a file */
+    public static final long POLLTIME = 500;
+
+
+    /**
+     * Open a file that rows are added to. The stream returns the rows that are already
+     * in the file, then waits for more, and only ends when it is closed. The file should
+     * only be added to.
+     * @param feedFile the file to follow.
+     * @param pollTime time in milliseconds between checks for new rows.
+     * @return the feed stream.
+     * @throws Exception any error.
+     */
+    public static InputStream tailFile(String feedFile, long pollTime) throws Exception {
+        return new TailInputStream(new RandomAccessFile(feedFile, "r"), pollTime);
+    }
+
+    /**
+     * Wait for one connection on a local socket, and return the rows it sends. The
+     * stream ends when the sender closes the connection.
+     * @param port the port to listen on, on the loopback address only.
+     * @return the feed stream.
+     * @throws Exception any error.
+     */
+    public static InputStream acceptSocket(int port) throws Exception {
+        Socket socket;                                      //the connection
+
+        try (ServerSocket server = new ServerSocket(port, 1, InetAddress.getLoopbackAddress())) {
+            socket = server.accept();
+        }
+
+        return socket.getInputStream();
+    }
+
+
+    /** Reads a file as it is added to, until it is closed */
+    protected static class TailInputStream extends InputStream {
+
+        /** The file being followed */
+        protected RandomAccessFile file;
+
+        /** Time in milliseconds between checks for new bytes */
+        protected long pollTime;
+
+        /** True once the stream is closed */
+        protected volatile boolean closed;
+
+
+        /**
+         * Create a new instance of TailInputStream.
+         * @param file the file to follow.
+         * @param pollTime time in milliseconds between checks for new bytes.
+         */
+        protected TailInputStream(RandomAccessFile file, long pollTime) {
+            this.file = file;
+            this.pollTime = Math.max(pollTime, 1);
+            closed = false;
+        }
+
+        /**
+         * Read the next byte, waiting for it to be added if needed.
+         * @return the byte, or -1 once the stream is closed.
+         * @throws IOException any error.
+         */
+        public int read() throws IOException {
+            byte[] one;                                     //the byte
+
+            one = new byte[1];
+            return ((read(one, 0, 1) < 0) ? -1 : (one[0] & 0xFF));
+        }
+
+        /**
+         * Read the bytes that are available, waiting for at least one to be added if
+         * there are none.
+         * @param bytes array to read into.
+         * @param offset start position in the array.
+         * @param length largest number of bytes to read.
+         * @return the number of bytes read, or -1 once the stream is closed.
+         * @throws IOException any error.
+         */
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int num;                                        //bytes read
+
+            if (length == 0) return 0;
+            while (true) {
+                synchronized (this) {
+                    if (closed) return -1;
+                    num = file.read(bytes, offset, length);
+                }
+                if (num > 0) return num;
+
+                try {
+                    Thread.sleep(pollTime);
+                }
+                catch (InterruptedException iex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for the feed");
+                }
+            }
+        }
+
+        /**
+         * Get the number of bytes that can be read without waiting.
+         * @return the bytes already in the file and not yet read.
+         * @throws IOException any error.
+         */
+        public synchronized int available() throws IOException {
+            if (closed) return 0;
+            return (int) Math.min(Integer.MAX_VALUE, Math.max(0, (file.length() - file.getFilePointer())));
+        }
+
+        /**
+         * Close the stream, so a waiting read ends.
+         * @throws IOException any error.
+         */
+        public synchronized void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Footprint.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import eq_fp.util.EqConst;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Objects;
+
+
+/**
+ * The footprint of the events before a target event - the number of day gaps, the
+ * average gap, the average event count and the average cohesion. The average gap and
+ * cohesion are kept rounded to one decimal place, the same as the description text,
+ * so two footprints are equal exactly when their descriptions are. The text is only
+ * created when it is output.
+ */
+public class Footprint {
+
+    /** Number of day gaps */
+    public final int numGaps;
+
+    /** Average gap size in days, to one decimal place */
+    public final double avGap;
+
+    /** Average number of matching events each day */
+    public final double avCount;
+
+    /** Average cohesion, to one decimal place */
+    public final double avCoh;
+
+    /** The event that was scored, or null if not known */
+    public final String event;
+
+
+    /**
+     * Create a new instance of Footprint.
+     * @param numGaps number of day gaps.
+     * @param avGap average gap size in days.
+     * @param avCount average number of matching events each day.
+     * @param avCoh average cohesion.
+     * @param event the event that was scored, or null if not known.
+     */
+    public Footprint(int numGaps, double avGap, double avCount, double avCoh, String event) {
+        this.numGaps = numGaps;
+        this.avGap = round(avGap);
+        this.avCount = avCount;
+        this.avCoh = round(avCoh);
+        this.event = event;
+    }
+
+    /**
+     * Round a value to one decimal place, half even, as the description format does.
+     * A negative value that rounds to zero keeps its sign, as it does in the text.
+     * @param value the value.
+     * @return the rounded value.
+     */
+    private static double round(double value) {
+        double rounded;                                     //rounded value
+
+        if (Double.isNaN(value) || Double.isInfinite(value)) return value;
+
+        rounded = new BigDecimal(value).setScale(1, RoundingMode.HALF_EVEN).doubleValue();
+        return (((rounded == 0) && (value < 0)) ? -0.0 : rounded);
+    }
+
+    /**
+     * Create a footprint from its description text, of the form numGaps/avGap/avCount/avCoh.
+     * @param description the description.
+     * @param event the event that was scored, or null if not known.
+     * @return the footprint.
+     */
+    public static Footprint fromString(String description, String event) {
+        Object[] keyParts;                                  //description parts
+
+        keyParts = EqConst.fromEventKey(description);
+        return new Footprint((int) keyParts[0], (double) keyParts[1],
+                ((keyParts[2] != null) ? (double) keyParts[2] : 0),
+                ((keyParts.length > 3) ? (double) keyParts[3] : 0), event);
+    }
+
+    /**
+     * Return true if this can represent a footprint, instead of immediate or 0.
+     * @return true if there is at least one day gap.
+     */
+    public boolean hasFootprint() {
+        return (numGaps > 0);
+    }
+
+    /**
+     * Return true if the footprint values are the same, whatever the event.
+     * @param footprint the other footprint.
+     * @return true if the descriptions are the same.
+     */
+    public boolean sameValues(Footprint footprint) {
+        return ((numGaps == footprint.numGaps) && (Double.compare(avGap, footprint.avGap) == 0)
+                && (Double.compare(avCount, footprint.avCount) == 0)
+                && (Double.compare(avCoh, footprint.avCoh) == 0));
+    }
+
+    /**
+     * Get the compound key of the description and the event, as written to the analysis file.
+     * @return the compound key.
+     */
+    public String toCompoundKey() {
+        return EqConst.toCompoundKey(toString(), event);
+    }
+
+    /**
+     * Get the description text.
+     * @return the description, of the form numGaps/avGap/avCount/avCoh.
+     */
+    public String toString() {
+        return EqConst.toEventKey(numGaps, avGap, avCount, avCoh);
+    }
+
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Footprint)) return false;
+        return (sameValues((Footprint) obj) && Objects.equals(event, ((Footprint) obj).event));
+    }
+
+    public int hashCode() {
+        return Objects.hash(numGaps, avGap, avCount, avCoh, event);
+    }
+}
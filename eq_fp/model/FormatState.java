@@ -0,0 +1,321 @@
+/*
+ * FormatState.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * What is needed to carry on formatting a raw dataset that has had more rows added,
+ * written next to the events file. It holds the time of the last event formatted and
+ * the number of events with that time, the time bucket that is still open, as its row
+ * has not been written to the events file yet, and the co-occurrence counts of the
+ * rows that have been written, with the event keys in the order they were first seen. The times are ordinals counted from
+ * the date and time as written in the raw data, not times in the local time zone, so
+ * the state can be carried on in any time zone. The header holds the size and
+ * modified time of the text events file, and the state is only used while they still
+ * match, with the same format arguments.
+ */
+public class FormatState {
+
+    /** Extension added to the events file name for the state file */
+    public static final String FILEEXT = ".state";
+
+    /** Marks a format state file - EQST */
+    public static final int MAGIC = 0x45515354;
+
+    /** File format version */
+    public static final int VERSION = 2;
+
+    /** Number of format arguments that must match */
+    public static final int NUMARGS = 4;
+
+
+    /** Format arguments - number of bands, band size, time separator and time unit */
+    protected String[] formatArgs;
+
+    /** Time ordinal in milliseconds of the last event formatted, from TimeParser, in no time zone */
+    protected long lastTime;
+
+    /** Number of events formatted with the last time */
+    protected int lastTimeCount;
+
+    /** Ordinal of the time bucket that is still open, from TimeParser, in no time zone */
+    protected long lastBucket;
+
+    /** Event keys of the open time bucket */
+    protected ArrayList<String> openRow;
+
+    /** Event key of each id, in the order they were first seen */
+    protected ArrayList<String> eventKeys;
+
+    /** Id of each event key */
+    protected HashMap<String, Integer> eventIds;
+
+    /** Co-occurrence counts of the rows written to the events file */
+    protected CooccurrenceMatrix counts;
+
+
+    /**
+     * Create a new instance of FormatState, before any rows are formatted.
+     * @param args format arguments - number of bands, band size, time separator and time unit.
+     */
+    public FormatState(String[] args) {
+        formatArgs = Arrays.copyOf(args, NUMARGS);
+        lastTime = Long.MIN_VALUE;
+        lastTimeCount = 0;
+        lastBucket = Long.MIN_VALUE;
+        openRow = new ArrayList<>();
+        eventKeys = new ArrayList<>();
+        eventIds = new HashMap<>();
+        counts = CooccurrenceMatrix.count(new int[0][], 0, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Get the state file for an events file.
+     * @param eventsFile the events file.
+     * @return the state file.
+     */
+    public static String stateFile(String eventsFile) {
+        return (eventsFile + FILEEXT);
+    }
+
+    /**
+     * Get the time of the last event formatted. Raw rows before it have already
+     * been formatted, and the first getLastTimeCount rows at it.
+     * @return the time ordinal in milliseconds.
+     */
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    /**
+     * Get the number of events formatted with the last time.
+     * @return the number of events.
+     */
+    public int getLastTimeCount() {
+        return lastTimeCount;
+    }
+
+    /**
+     * Get the ordinal of the time bucket that is still open.
+     * @return the bucket ordinal.
+     */
+    public long getLastBucket() {
+        return lastBucket;
+    }
+
+    /**
+     * Get the event keys of the open time bucket.
+     * @return the event keys, or an empty list if no rows have been formatted.
+     */
+    public ArrayList<String> getOpenRow() {
+        return openRow;
+    }
+
+    /**
+     * Get the event keys, with the ids the counts use.
+     * @return the event key of each id.
+     */
+    public ArrayList<String> getEventKeys() {
+        return eventKeys;
+    }
+
+    /**
+     * Add the grid rows of a formatting run. Every row except the last has been written
+     * to the events file, so is counted, and the last row is kept as the open bucket.
+     * @param gridRows grid rows of event keys from the run, starting with the open
+     * bucket it carried on from.
+     * @param lastTime time ordinal of the last event formatted.
+     * @param lastTimeCount number of events formatted with the last time.
+     * @param lastBucket ordinal of the last time bucket.
+     * @param pool pool to count the rows on.
+     */
+    public void addRows(List<? extends List<String>> gridRows, long lastTime, int lastTimeCount, long lastBucket,
+                        ForkJoinPool pool) {
+        int[][] rows;                                       //event ids of the written rows
+
+        if (gridRows.isEmpty()) return;
+
+        rows = GridClusterEngine.toIds(gridRows.subList(0, gridRows.size() - 1), eventIds, eventKeys);
+        counts = counts.add(rows, eventKeys.size(), pool);
+
+        openRow = new ArrayList<>(gridRows.get(gridRows.size() - 1));
+        GridClusterEngine.toIds(Arrays.asList(openRow), eventIds, eventKeys);
+        this.lastTime = lastTime;
+        this.lastTimeCount = lastTimeCount;
+        this.lastBucket = lastBucket;
+    }
+
+    /**
+     * Get the co-occurrence counts of every row, including the open bucket.
+     * @param pool pool to count the open bucket on.
+     * @return the counts, with the ids of getEventKeys.
+     */
+    public CooccurrenceMatrix getCounts(ForkJoinPool pool) {
+        return counts.add(GridClusterEngine.toIds(Arrays.asList(openRow), eventIds, eventKeys), eventKeys.size(), pool);
+    }
+
+    /**
+     * Write the state file for an events file. The events file should already be
+     * written and closed.
+     * @param eventsFile the text events file.
+     * @throws Exception any error.
+     */
+    public void write(String eventsFile) throws Exception {
+        int id;                                             //event id
+        File textFile;                                      //text events file
+        DataOutputStream writer;                            //output file
+
+        try {
+            textFile = new File(eventsFile);
+            writer = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(stateFile(eventsFile))));
+            try {
+                //header
+                writer.writeInt(MAGIC);
+                writer.writeInt(VERSION);
+                writer.writeLong(textFile.length());
+                writer.writeLong(textFile.lastModified());
+                for (String arg : formatArgs) {
+                    writer.writeUTF(arg);
+                }
+                writer.writeLong(lastTime);
+                writer.writeInt(lastTimeCount);
+                writer.writeLong(lastBucket);
+
+                writeKeys(writer, openRow);
+                writeKeys(writer, eventKeys);
+
+                //each pair once, with the smaller id first
+                writer.writeLong(counts.numPairs());
+                for (id = 0; id < counts.size(); id++) {
+                    for (int k = 0; k < counts.degree(id); k++) {
+                        if (counts.neighbour(id, k) < id) continue;
+                        writer.writeInt(id);
+                        writer.writeInt(counts.neighbour(id, k));
+                        writer.writeLong(counts.neighbourCount(id, k));
+                    }
+                }
+            }
+            finally {
+                writer.close();
+            }
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Write a list of event keys.
+     * @param writer the output file.
+     * @param keys the event keys.
+     * @throws Exception any error.
+     */
+    private static void writeKeys(DataOutputStream writer, ArrayList<String> keys) throws Exception {
+        writer.writeInt(keys.size());
+        for (String key : keys) {
+            writer.writeUTF(key);
+        }
+    }
+
+    /**
+     * Read the state file for an events file.
+     * @param eventsFile the text events file.
+     * @param args format arguments for the new rows.
+     * @return the state, or null if there is no state file, it does not match the events
+     * file or the format arguments, or the grid catalog is missing.
+     * @throws Exception any error.
+     */
+    public static FormatState read(String eventsFile, String[] args) throws Exception {
+        int i;
+        long numPairs;                                      //number of counted pairs
+        File textFile, stateFile;                           //events and state files
+        FormatState state;                                  //the state
+        CooccurrenceMatrix.PairCounts pairs;                //the counts
+        DataInputStream reader;                             //input file
+
+        try {
+            textFile = new File(eventsFile);
+            stateFile = new File(stateFile(eventsFile));
+            if (!stateFile.exists() || !textFile.exists()) return null;
+            if (!(new File(GridCatalog.catalogFile(eventsFile))).exists()) return null;
+
+            reader = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)));
+            try {
+                if ((reader.readInt() != MAGIC) || (reader.readInt() != VERSION)) return null;
+                if ((reader.readLong() != textFile.length()) || (reader.readLong() != textFile.lastModified())) {
+                    return null;
+                }
+
+                state = new FormatState(args);
+                for (i = 0; i < NUMARGS; i++) {
+                    if (!reader.readUTF().equals(state.formatArgs[i])) return null;
+                }
+                state.lastTime = reader.readLong();
+                state.lastTimeCount = reader.readInt();
+                state.lastBucket = reader.readLong();
+
+                state.openRow = readKeys(reader);
+                state.eventKeys = readKeys(reader);
+                for (i = 0; i < state.eventKeys.size(); i++) {
+                    state.eventIds.put(state.eventKeys.get(i), i);
+                }
+
+                pairs = new CooccurrenceMatrix.PairCounts();
+                numPairs = reader.readLong();
+                for (long pair = 0; pair < numPairs; pair++) {
+                    pairs.add(CooccurrenceMatrix.PairCounts.key(reader.readInt(), reader.readInt()), reader.readLong());
+                }
+                state.counts = new CooccurrenceMatrix(state.eventKeys.size(), pairs);
+            }
+            finally {
+                reader.close();
+            }
+
+            return state;
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Read a list of event keys.
+     * @param reader the input file.
+     * @return the event keys.
+     * @throws Exception any error.
+     */
+    private static ArrayList<String> readKeys(DataInputStream reader) throws Exception {
+        int num;                                            //number of keys
+        ArrayList<String> keys;                             //the keys
+
+        num = reader.readInt();
+        keys = new ArrayList<>(num);
+        for (int i = 0; i < num; i++) {
+            keys.add(reader.readUTF());
+        }
+
+        return keys;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * GridCatalog.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import eq_fp.util.DataConst;
+import eq_fp.util.EventCode;
+import org.jlog2.util.FileLoader;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+
+/**
+ * The category space of the frequency grid. Each grid cell, a lat:lng location, is
+ * given a dense id in the order it was first seen, and each cell has a category for
+ * each magnitude band from 1 to the number of bands. The category id is
+ * (cell id * number of bands) + (band - 1), so the ids stay the same for as long as
+ * the catalog is kept. The catalog is written next to the events file.
+ */
+public class GridCatalog {
+
+    /** Extension added to the events file name for the catalog file */
+    public static final String FILEEXT = ".grid";
+
+    /** Tag for the number of bands in the catalog file */
+    public static final String BANDS = "Bands";
+
+
+    /** Number of magnitude bands */
+    protected int numBands;
+
+    /** Cell ids, using the location part of the event code */
+    protected EventSymbols cells;
+
+
+    /**
+     * Create a new instance of GridCatalog.
+     * @param numBands number of magnitude bands.
+     */
+    public GridCatalog(int numBands) {
+        this.numBands = numBands;
+        cells = new EventSymbols();
+    }
+
+    /**
+     * Get the catalog file for an events file.
+     * @param eventsFile the events file.
+     * @return the catalog file.
+     */
+    public static String catalogFile(String eventsFile) {
+        return (eventsFile + FILEEXT);
+    }
+
+    /**
+     * Add the cell of an event, if it is new.
+     * @param eventCode the event code.
+     * @return the cell id.
+     */
+    public int addCell(long eventCode) {
+        return cells.intern(EventCode.cell(eventCode));
+    }
+
+    /**
+     * Get the cell id of an event.
+     * @param eventCode the event code.
+     * @return the cell id, or -1 if the cell is not in the catalog.
+     */
+    public int cellId(long eventCode) {
+        return cells.id(EventCode.cell(eventCode));
+    }
+
+    /**
+     * Get the location code of a cell.
+     * @param cellId the cell id.
+     * @return the location part of the event code.
+     */
+    public long cellCode(int cellId) {
+        return cells.code(cellId);
+    }
+
+    /**
+     * Get the key of a cell.
+     * @param cellId the cell id.
+     * @return the key, of the form lat:lng.
+     */
+    public String cellKey(int cellId) {
+        String key;                                         //event key with a zero band
+
+        key = EventCode.toKey(cells.code(cellId));
+        return key.substring(0, key.lastIndexOf(DataConst.KEYSEP));
+    }
+
+    /**
+     * Get the category id of an event.
+     * @param eventCode the event code.
+     * @return the category id, or -1 if the cell is not in the catalog or the band is
+     * outside of the bands.
+     */
+    public int categoryId(long eventCode) {
+        int cellId;                                         //cell id
+        int band;                                           //magnitude band
+
+        cellId = cellId(eventCode);
+        band = EventCode.band(eventCode);
+        if ((cellId < 0) || (band < 1) || (band > numBands)) return -1;
+
+        return ((cellId * numBands) + (band - 1));
+    }
+
+    /**
+     * Get the event key of a category.
+     * @param categoryId the category id.
+     * @return the key, of the form lat:lng:band.
+     */
+    public String categoryKey(int categoryId) {
+        return (cellKey(categoryId / numBands) + DataConst.KEYSEP + ((categoryId % numBands) + 1));
+    }
+
+    /**
+     * Get the number of cells.
+     * @return the number of cells.
+     */
+    public int numCells() {
+        return cells.size();
+    }
+
+    /**
+     * Get the number of magnitude bands.
+     * @return the number of bands.
+     */
+    public int numBands() {
+        return numBands;
+    }
+
+    /**
+     * Get the number of categories.
+     * @return the number of cells times the number of bands.
+     */
+    public int numCategories() {
+        return (cells.size() * numBands);
+    }
+
+    /**
+     * Write the catalog to a file - the number of bands and then one cell per line,
+     * in id order.
+     * @param catalogFile the file to write to.
+     * @throws Exception any error.
+     */
+    public void write(String catalogFile) throws Exception {
+        OutputStream writer;                                //output file
+
+        try {
+            writer = new BufferedOutputStream(new FileOutputStream(catalogFile));
+            try {
+                writer.write((BANDS + DataConst.KEYSEP + " " + numBands + "\n").getBytes());
+                for (int i = 0; i < cells.size(); i++) {
+                    writer.write((cellKey(i) + "\n").getBytes());
+                }
+            }
+            finally {
+                writer.close();
+            }
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Read a catalog from a file.
+     * @param catalogFile the file to read.
+     * @return the catalog, or null if there is no catalog file.
+     * @throws Exception any error.
+     */
+    public static GridCatalog read(String catalogFile) throws Exception {
+        String nextLine;                                    //next line
+        GridCatalog catalog;                                //the catalog
+        BufferedReader reader;                              //file reader
+
+        try {
+            if (!(new File(catalogFile)).exists()) return null;
+
+            reader = FileLoader.getBufferedInputStream(catalogFile);
+            try {
+                nextLine = reader.readLine();
+                if ((nextLine == null) || !nextLine.startsWith(BANDS + DataConst.KEYSEP)) {
+                    throw new IllegalArgumentException("Invalid grid catalog file: " + catalogFile);
+                }
+                catalog = new GridCatalog(Integer.parseInt(nextLine.substring(BANDS.length() + 1).trim()));
+
+                //the band part is only there to make an event key
+                while ((nextLine = reader.readLine()) != null) {
+                    if (nextLine.isEmpty()) continue;
+                    catalog.addCell(EventCode.toCode(nextLine + DataConst.KEYSEP + "0"));
+                }
+            }
+            finally {
+                reader.close();
+            }
+
+            return catalog;
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+}
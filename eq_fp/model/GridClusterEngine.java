@@ -0,0 +1,190 @@
+/*
+ * GridClusterEngine.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import org.licas.ai_solver.central.grid.CellCount;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * Clusters the grid dataset with the frequency grid rules of the licas engine, but
+ * with the co-occurrence counts in a sparse matrix that is counted in parallel. Each
+ * event key is given an id in the order it is first seen, which is the licas category
+ * order. The first event that is not in a cluster yet starts the next one, and each
+ * other event it occurs with joins it, unless that event occurs more often with
+ * another event that is not in a cluster yet.
+ */
+public class GridClusterEngine implements ClusterEngine {
+
+    /** Pool to count the co-occurrences on */
+    protected ForkJoinPool pool;
+
+
+    /** Create a new instance of GridClusterEngine, which counts on the common pool */
+    public GridClusterEngine() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Create a new instance of GridClusterEngine.
+     * @param pool pool to count the co-occurrences on.
+     */
+    public GridClusterEngine(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Cluster the events in the grid dataset.
+     * @param gridEvents the grid dataset, with one row of event keys for each time bucket.
+     * @return the clusters, each with its member keys and their counts.
+     * @throws Exception any error.
+     */
+    public ArrayList<ArrayList<CellCount>> cluster(ArrayList<ArrayList<String>> gridEvents) throws Exception {
+        int[][] rows;                                       //event ids of each row
+        HashMap<String, Integer> ids;                       //id of each event key
+        ArrayList<String> keys;                             //event key of each id
+
+        ids = new HashMap<>();
+        keys = new ArrayList<>();
+        rows = toIds(gridEvents, ids, keys);
+
+        return cluster(keys, CooccurrenceMatrix.count(rows, keys.size(), pool));
+    }
+
+    /**
+     * Cluster the events that have been counted for a format state, including its
+     * open time bucket.
+     * @param state the format state.
+     * @return the clusters, each with its member keys and their counts.
+     */
+    public ArrayList<ArrayList<CellCount>> cluster(FormatState state) {
+        return cluster(state.getEventKeys(), state.getCounts(pool));
+    }
+
+    /**
+     * Give each event key in the rows an id, in the order it is first seen. A key
+     * that already has an id keeps it.
+     * @param gridEvents rows of event keys.
+     * @param ids id of each event key, added to for new keys.
+     * @param keys event key of each id, added to for new keys.
+     * @return the event ids of each row.
+     */
+    public static int[][] toIds(List<? extends List<String>> gridEvents, HashMap<String, Integer> ids,
+                                ArrayList<String> keys) {
+        int i, k;
+        int[][] rows;                                       //event ids of each row
+        Integer id;                                         //id of an event key
+
+        rows = new int[gridEvents.size()][];
+        for (i = 0; i < rows.length; i++) {
+            rows[i] = new int[gridEvents.get(i).size()];
+            k = 0;
+            for (String key : gridEvents.get(i)) {
+                id = ids.get(key);
+                if (id == null) {
+                    id = keys.size();
+                    ids.put(key, id);
+                    keys.add(key);
+                }
+                rows[i][k++] = id;
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Cluster the events from their co-occurrence counts.
+     * @param keys event key of each id, with the ids in the order the keys were first seen.
+     * @param matrix co-occurrence counts.
+     * @return the clusters, each with its member keys and their counts.
+     */
+    public ArrayList<ArrayList<CellCount>> cluster(ArrayList<String> keys, CooccurrenceMatrix matrix) {
+        int k;
+        int seed;                                           //event that starts a cluster
+        int next;                                           //event that joins a cluster
+        long count;                                         //count with the seed
+        boolean[] clustered;                                //events in a cluster already
+        ArrayList<Integer> members;                         //member ids of a cluster
+        ArrayList<CellCount> cluster;                       //members of a cluster
+        ArrayList<ArrayList<CellCount>> clusters;           //generated clusters
+
+        clusters = new ArrayList<>();
+        clustered = new boolean[keys.size()];
+        members = new ArrayList<>();
+        for (seed = 0; seed < keys.size(); seed++) {
+            if (clustered[seed]) continue;
+
+            cluster = new ArrayList<>();
+            cluster.add(cellCount(keys.get(seed), matrix.count(seed, seed)));
+            members.clear();
+            members.add(seed);
+            for (k = 0; k < matrix.degree(seed); k++) {
+                next = matrix.neighbour(seed, k);
+                count = matrix.neighbourCount(seed, k);
+                if ((next != seed) && !clustered[next] && !strongerLink(matrix, next, seed, count, clustered)) {
+                    cluster.add(cellCount(keys.get(next), count));
+                    members.add(next);
+                }
+            }
+
+            for (int member : members) {
+                clustered[member] = true;
+            }
+            clusters.add(cluster);
+        }
+
+        return clusters;
+    }
+
+    /**
+     * Return true if an event occurs more often with another event that is not in a
+     * cluster, than with the seed. This includes the event itself.
+     * @param matrix co-occurrence counts.
+     * @param id the event id.
+     * @param seed the event that starts the cluster.
+     * @param count count with the seed.
+     * @param clustered events in a cluster already.
+     * @return true if there is a stronger link.
+     */
+    private static boolean strongerLink(CooccurrenceMatrix matrix, int id, int seed, long count,
+                                        boolean[] clustered) {
+        int other;                                          //other event
+
+        for (int k = 0; k < matrix.degree(id); k++) {
+            other = matrix.neighbour(id, k);
+            if ((other != seed) && !clustered[other] && (matrix.neighbourCount(id, k) > count)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Create the cell count for a cluster member.
+     * @param key the event key.
+     * @param count the count.
+     * @return the cell count.
+     */
+    private static CellCount cellCount(String key, long count) {
+        CellCount cellCount;                                //the cell count
+
+        cellCount = new CellCount();
+        cellCount.value = key;
+        cellCount.count = count;
+
+        return cellCount;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * LicasClusterEngine.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+import org.licas.ai_solver.central.grid.CellCount;
+import org.licas.ai_solver.central.grid.FrequencyGrid;
+import org.licas.ai_solver.spec.test.TestSpec;
+import org.licas.ai_solver.util.SolverConst;
+import org.licas.util.TypeConst;
+
+import java.util.ArrayList;
+
+
+/** Clusters the grid dataset with the licas frequency grid, in a single thread */
+public class LicasClusterEngine implements ClusterEngine {
+
+    /**
+     * Cluster the events in the grid dataset.
+     * @param gridEvents the grid dataset, with one row of event keys for each time bucket.
+     * @return the clusters, each with its member keys and their counts.
+     * @throws Exception any error.
+     */
+    public ArrayList<ArrayList<CellCount>> cluster(ArrayList<ArrayList<String>> gridEvents) throws Exception {
+        TestSpec testSpec;                                  //test spec
+        FrequencyGrid<String> fgd;                          //discrete frequency grid
+
+        testSpec = new TestSpec(null);
+        testSpec.getTestScript().tokenizer = (",");
+        testSpec.getTestScript().metricType = SolverConst.FREQGRIDV1;
+
+        fgd = new FrequencyGrid<>(testSpec);
+        fgd.setGridEvents(gridEvents);
+        fgd.solve(fgd.getMetric(TypeConst.STRING));
+
+        return fgd.getClusters();
+    }
+}
@@ -13,20 +13,18 @@ package eq_fp.model;
 
 
 import eq_fp.util.DataConst;
-import eq_fp.util.EqConst;
-import org.licas.ai_solver.central.grid.FrequencyGrid;
-import org.licas.ai_solver.model.result.Cluster;
-import org.licas.ai_solver.spec.test.TestSpec;
-import org.licas.ai_solver.util.SolverConst;
-import org.licas.util.TypeConst;
+import eq_fp.util.EventCode;
+import org.licas.ai_solver.central.grid.CellCount;
 import org.jlog2.util.FileLoader;
 import org.jlog2.util.StringHandler;
 
 import java.io.BufferedReader;
 import java.io.FileOutputStream;
-import java.text.DecimalFormat;
+import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
 
 
 /** Read the raw data and create the frequency grid data to be analysed */
@@ -37,124 +35,147 @@ public class ReadData {
      * @param trainFile the train dataset.
      * @param eventsFile file to write the re-formatted data to.
      * @param clustersFile file to write the clusters to.
-     * @param args input variables.
+     * @param args input variables - number of bands, band size, time separator, time unit
+     * and optionally the clustering engine, DataConst.GRIDENGINE or DataConst.LICASENGINE.
      */
     public static void formatData(String trainFile, String eventsFile, String clustersFile,
                                     String[] args) throws Exception {
-        int i, j;
-        int index;                                          //index
-        int numBands;                                       //number of bands
-        double bandSize;                                    //size of a band
-        double value;                                       //value
-        double lat, lng;                                    //latitude and longitude
-        String timeUnit;                                    //time unit
-        String timeSep;                                     //time separator
-        String clusterStr;                                  //cluster string
-        String gridKey, nextKey;                            //grid key
-        String dateStr, dateStr2;                           //dates as string
-        String formatDate;                                  //to reformat the date
-        DecimalFormat df;                                   //decimal format
-        ArrayList<String> categories;                       //list of categories
-        ArrayList<String> fgRow;                            //grid row
-        ArrayList<ArrayList<String>> fgDataset;             //grid dataset
-        ArrayList dataRow;                                  //data row
-        ArrayList<ArrayList> dataset;                       //the dataset
-        TestSpec testSpec;                                  //test spec
-        FrequencyGrid fgd;                                  //discrete frequency grid
-        ArrayList clusters;                                 //generated clusters
         DatasetManager dataManager;                         //dataset manager
-        FileOutputStream writer;                            //output file
+        EventFormatter formatter;                           //to bucket the raw rows
 
         try {
-            dataManager = new DatasetManager(trainFile);
-            dataManager.createDataset();
-            dataset = dataManager.getInputDatasets();
-
-            testSpec = new TestSpec(null);
-            testSpec.getTestScript().tokenizer = (",");
-            testSpec.getTestScript().metricType = SolverConst.FREQGRIDV1;
-            df = new DecimalFormat("###");
-            numBands = Integer.parseInt(args[0]);
-            bandSize = Double.parseDouble(args[1]);
-            timeSep = args[2];
-            timeUnit = args[3];
-
             //measure number of entries per day
-            categories = new ArrayList<>();
-            fgDataset = new ArrayList<>();
-            fgRow = null;
-            dateStr2 = "";
-            writer = new FileOutputStream(eventsFile);
-
-            for (i = 0; i < dataset.size(); i++) {
-                dataRow = dataset.get(i);
-
-                dateStr = (String) dataRow.get(0);
-                lat = (double) dataRow.get(1);
-                lng = (double) dataRow.get(2);
-                value = (double) dataRow.get(3);
-
-                //format the date to the required granularity
-                index = dateStr.indexOf(timeSep);
-                formatDate = dateStr.substring(0, index);
-
-                //some dates may use hypens
-                formatDate = formatDate.replace("-", "/");
-
-                //move to time part - keep hours only
-                dateStr = dateStr.substring(index + 1);
-
-                //time is always colons
-                index = dateStr.indexOf(":");
-                if (timeUnit.equals(EqConst.HOUR)) {
-                    formatDate += (" " + dateStr.substring(0, index) + ":00:00");
-                }
-                else {
-                    formatDate += (" 00:00:00");
-                }
-                dateStr = formatDate;
-
-                //create the key to indicate the event
-                gridKey = (df.format(lat) + DataConst.KEYSEP + df.format(lng));
-                for (j = 1; j <= numBands; j++) {
-                    nextKey = (gridKey + DataConst.KEYSEP + j);
-                    if (!categories.contains(nextKey)) {
-                        categories.add(nextKey);
-                    }
-                }
+            // the raw rows are streamed, so the whole file is not held in memory
+            formatter = new EventFormatter(eventsFile, args);
+            try {
+                dataManager = new DatasetManager(trainFile);
+                dataManager.streamDataset(formatter);
+            }
+            finally {
+                formatter.close();
+            }
 
-                nextKey = (gridKey + DataConst.KEYSEP + (int) (value / bandSize));
-                if (dateStr.equalsIgnoreCase(dateStr2)) {
-                    fgRow.add(nextKey);
-                } else {
-                    if (fgRow != null) {
-                        writer.write((dateStr + "  " + String.valueOf(fgRow) + "\n").getBytes());
-                    }
-                    fgRow = new ArrayList<>();
-                    fgDataset.add(fgRow);
-                    fgRow.add(nextKey);
-                }
+            finishFormat(formatter, eventsFile, clustersFile, args, new FormatState(args));
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();;
+            throw ex;
+        }
+    }
+
+    /**
+     * Re-format a raw dataset that has already been read by column into the files used
+     * for the analysis. The dataset can be read once and re-formatted for different
+     * input variables.
+     * @param dataset the train dataset columns.
+     * @param eventsFile file to write the re-formatted data to.
+     * @param clustersFile file to write the clusters to.
+     * @param args input variables - number of bands, band size, time separator, time unit
+     * and optionally the clustering engine, DataConst.GRIDENGINE or DataConst.LICASENGINE.
+     */
+    public static void formatData(ColumnarDataset dataset, String eventsFile, String clustersFile,
+                                    String[] args) throws Exception {
+        EventFormatter formatter;                           //to bucket the raw rows
+
+        try {
+            formatter = new EventFormatter(eventsFile, args);
+            try {
+                formatter.addEvents(dataset);
+            }
+            finally {
+                formatter.close();
+            }
 
-                dateStr2 = dateStr;
+            finishFormat(formatter, eventsFile, clustersFile, args, new FormatState(args));
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();;
+            throw ex;
+        }
+    }
+
+    /**
+     * Format only the rows that have been added to the raw dataset since the events
+     * file was last formatted, and add them to the events files. The raw dataset should
+     * be the earlier one with the new rows after it, in time order, so the rows before
+     * the last event time formatted are skipped, and as many rows at that time as were
+     * formatted with it. The clusters are then found again
+     * from the saved co-occurrence counts with the new rows added. If there is no saved
+     * state that matches the events file and format arguments, or the licas engine is
+     * named, as it needs every row, the whole dataset is formatted again.
+     * @param trainFile the train dataset, with the new rows.
+     * @param eventsFile file with the re-formatted data to add to.
+     * @param clustersFile file to write the clusters to.
+     * @param args input variables - number of bands, band size, time separator, time unit
+     * and optionally the clustering engine.
+     */
+    public static void appendData(String trainFile, String eventsFile, String clustersFile,
+                                    String[] args) throws Exception {
+        DatasetManager dataManager;                         //dataset manager
+        EventFormatter formatter;                           //to bucket the new raw rows
+        FormatState state;                                  //state of the earlier run
+
+        try {
+            state = FormatState.read(eventsFile, args);
+            if ((state == null) || !(clusterEngine(args) instanceof GridClusterEngine)) {
+                formatData(trainFile, eventsFile, clustersFile, args);
+                return;
+            }
+
+            formatter = new EventFormatter(eventsFile, args, state);
+            try {
+                dataManager = new DatasetManager(trainFile);
+                dataManager.streamDataset(formatter);
+            }
+            finally {
+                formatter.close();
             }
 
-            writer.close();
-            writer = new FileOutputStream(clustersFile);
+            finishFormat(formatter, eventsFile, clustersFile, args, state);
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();;
+            throw ex;
+        }
+    }
 
-            fgd = new FrequencyGrid(testSpec);
-            fgd.setGridEvents(fgDataset);
-            fgd.solve(fgd.getMetric(TypeConst.STRING));
+    /**
+     * Format the rows of a live feed as they arrive, adding them to the events files.
+     * Each time bucket is passed to the handler as soon as it is closed, by the first
+     * event of a later bucket, as it is in the events file. When the feed ends, the
+     * clusters are found again and the state is saved, as for appendData. The events
+     * file should already be formatted with the same arguments, and the project engine
+     * is used, as it keeps the counts of the earlier rows.
+     * @param feed the live feed, starting with the same metadata lines as a dataset file.
+     * @param eventsFile file with the re-formatted data to add to.
+     * @param clustersFile file to write the clusters to.
+     * @param args input variables - number of bands, band size, time separator and time unit.
+     * @param handler receives each closed time bucket.
+     */
+    public static void streamData(InputStream feed, String eventsFile, String clustersFile, String[] args,
+                                    BucketHandler handler) throws Exception {
+        EventFormatter formatter;                           //to bucket the feed rows
+        FormatState state;                                  //state of the earlier run
 
-            clusters = fgd.getClusters();
-            System.out.println("Clusters:");
-            for (i = 0; i < clusters.size(); i++) {
-                clusterStr = String.valueOf(clusters.get(i));
-                clusterStr = clusterStr.substring(1, clusterStr.length() - 1);
-                writer.write(("Cluster " + (i + 1) + "\n" + clusterStr + "\n").getBytes());
+        try {
+            state = FormatState.read(eventsFile, args);
+            if (state == null) {
+                throw new IllegalArgumentException("Not formatted with these arguments: " + eventsFile);
+            }
+            if (!(clusterEngine(args) instanceof GridClusterEngine)) {
+                throw new IllegalArgumentException("A live feed is clustered with the " + DataConst.GRIDENGINE + " engine");
+            }
 
-                System.out.println(String.valueOf(clusters.get(i)));
+            formatter = new EventFormatter(eventsFile, args, state);
+            formatter.setBucketHandler(handler);
+            try {
+                new DatasetManager(null).streamDataset(feed, formatter);
+            }
+            finally {
+                formatter.close();
             }
-            writer.close();
+
+            finishFormat(formatter, eventsFile, clustersFile, args, state);
         }
         catch (Exception ex) {
             ex.printStackTrace();;
@@ -162,6 +183,98 @@ public class ReadData {
         }
     }
 
+    /**
+     * Add the formatted rows to the format state, write the clusters and save the state
+     * for the next rows. The project engine clusters from the counts in the state, so
+     * the rows are only counted once.
+     * @param formatter the formatter that has bucketed the events, and been closed.
+     * @param eventsFile the events file.
+     * @param clustersFile file to write the clusters to.
+     * @param args input variables.
+     * @param state the format state before these rows.
+     * @return the clusters, the same as readClusters would return for the clusters file.
+     * @throws Exception any error.
+     */
+    public static ArrayList<EventCluster> finishFormat(EventFormatter formatter, String eventsFile,
+                                                       String clustersFile, String[] args,
+                                                       FormatState state) throws Exception {
+        ClusterEngine engine;                               //the clustering engine
+        ClusterStore clusterStore;                          //binary copy of the clusters
+
+        engine = clusterEngine(args);
+        state.addRows(formatter.getGridEvents(), formatter.getLastTime(), formatter.getLastTimeCount(),
+                formatter.getLastBucket(),
+                ForkJoinPool.commonPool());
+        if (engine instanceof GridClusterEngine) {
+            clusterStore = writeClusters(((GridClusterEngine) engine).cluster(state), clustersFile);
+        }
+        else {
+            clusterStore = writeClusters(engine.cluster(formatter.getGridEvents()), clustersFile);
+        }
+        state.write(eventsFile);
+
+        return clusterStore.getClusters();
+    }
+
+    /**
+     * Write the clusters file from the frequency grid clusters, and its binary copy.
+     * @param clusters the clusters, each with its member keys and their counts.
+     * @param clustersFile file to write the clusters to.
+     * @return the binary copy of the clusters.
+     * @throws Exception any error.
+     */
+    private static ClusterStore writeClusters(ArrayList<ArrayList<CellCount>> clusters, String clustersFile) throws Exception {
+        int i, j;
+        long[] codes;                                       //member event codes
+        double[] counts;                                    //member counts
+        String clusterStr;                                  //cluster string
+        ArrayList<CellCount> cellCounts;                    //members of a cluster
+        ClusterStore clusterStore;                          //binary copy of the clusters
+        FileOutputStream writer;                            //output file
+
+        writer = new FileOutputStream(clustersFile);
+
+        clusterStore = new ClusterStore();
+        System.out.println("Clusters:");
+        for (i = 0; i < clusters.size(); i++) {
+            clusterStr = String.valueOf(clusters.get(i));
+            clusterStr = clusterStr.substring(1, clusterStr.length() - 1);
+            writer.write(("Cluster " + (i + 1) + "\n" + clusterStr + "\n").getBytes());
+
+            //keep the member codes and counts for the binary copy
+            cellCounts = clusters.get(i);
+            codes = new long[cellCounts.size()];
+            counts = new double[cellCounts.size()];
+            for (j = 0; j < cellCounts.size(); j++) {
+                codes[j] = EventCode.toCode(String.valueOf(cellCounts.get(j).value).trim());
+                counts[j] = cellCounts.get(j).count;
+            }
+            clusterStore.addCluster(("Cluster " + (i + 1)), codes, counts);
+
+            System.out.println(String.valueOf(clusters.get(i)));
+        }
+        writer.close();
+        clusterStore.write(clustersFile);
+
+        return clusterStore;
+    }
+
+    /**
+     * Get the clustering engine named in the input variables. The project engine is
+     * used unless the licas one is named.
+     * @param args input variables, with the optional engine name after the time unit.
+     * @return the clustering engine.
+     */
+    private static ClusterEngine clusterEngine(String[] args) {
+        String name;                                        //engine name
+
+        name = ((args.length > 4) ? args[4] : DataConst.GRIDENGINE);
+        if (name.equalsIgnoreCase(DataConst.LICASENGINE)) return new LicasClusterEngine();
+        if (name.equalsIgnoreCase(DataConst.GRIDENGINE)) return new GridClusterEngine();
+
+        throw new IllegalArgumentException("Unknown clustering engine: " + name);
+    }
+
     /**
      * Read the events file into a structure.
      * @param eventsFile file with the events.
@@ -196,21 +309,92 @@ public class ReadData {
     }
 
     /**
-     * Read the clusters file into a structure.
+     * Read the events file into an event index. The event keys are converted straight
+     * into event codes, without creating a list of strings for each day. If the binary
+     * copy of the events file is up to date, it is read instead. The grid catalog
+     * written next to the events file is added to the index, if there is one.
+     * @param eventsFile file with the events.
+     * @return index of the events.
+     * @throws java.lang.Exception any error.
+     */
+    public static EventIndex readEventIndex(String eventsFile) throws Exception {
+
+        int index;                                          //index
+        int end;                                            //end of a value
+        int count;                                          //number of values
+        String dateStr;                                     //date string
+        String nextLine;                                    //next line
+        long[] codes;                                       //event codes
+        LinkedHashMap<String, long[]> dayCodes;             //codes for each date
+        EventIndex eventIndex;                              //index of the events
+        BufferedReader reader;                              //file reader
+
+        try {
+            //the binary copy is much quicker to read, if it is up to date
+            eventIndex = EventStore.read(eventsFile);
+            if (eventIndex != null) {
+                eventIndex.setGridCatalog(GridCatalog.read(GridCatalog.catalogFile(eventsFile)));
+                return eventIndex;
+            }
+
+            reader = FileLoader.getBufferedInputStream(eventsFile);
+            dayCodes = new LinkedHashMap<>();
+            while ((nextLine = reader.readLine()) != null) {
+                index = nextLine.indexOf("[");
+                dateStr = nextLine.substring(0, index).trim();
+
+                //values are separated by ", " between the brackets
+                count = 0;
+                codes = new long[8];
+                index++;
+                while (index < nextLine.length() - 1) {
+                    end = nextLine.indexOf(", ", index);
+                    if ((end < 0) || (end > nextLine.length() - 1)) end = (nextLine.length() - 1);
+
+                    if (end > index) {
+                        if (count == codes.length) codes = Arrays.copyOf(codes, (count * 2));
+                        codes[count++] = EventCode.toCode(nextLine.substring(index, end));
+                    }
+                    index = (end + 2);
+                }
+
+                dayCodes.put(dateStr, Arrays.copyOf(codes, count));
+            }
+            reader.close();
+
+            eventIndex = new EventIndex(new ArrayList<>(dayCodes.keySet()), new ArrayList<>(dayCodes.values()));
+            eventIndex.setGridCatalog(GridCatalog.read(GridCatalog.catalogFile(eventsFile)));
+
+            return eventIndex;
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Read the clusters file into a structure. If the binary copy of the clusters file
+     * is up to date, it is read instead. The member keys are converted into event codes
+     * once, here.
      * @param clustersFile file with the clusters.
      * @throws java.lang.Exception any error.
      */
-    public static ArrayList<Cluster> readClusters(String clustersFile) throws Exception {
+    public static ArrayList<EventCluster> readClusters(String clustersFile) throws Exception {
 
         int index;                                          //index
         String nextKey;                                     //next key
         String valueStr;                                    //value string
         String nextLine;                                    //next line
-        ArrayList<Cluster> clusters;                        //generated clusters
-        Cluster cluster;                                    //single cluster
+        ArrayList<EventCluster> clusters;                   //generated clusters
+        ArrayList<String> members;                          //member keys of a cluster
+        ClusterStore clusterStore;                          //binary copy of the clusters
         BufferedReader reader;                              //file reader
 
         try {
+            //the binary copy is read without any parsing, if it is up to date
+            clusterStore = ClusterStore.read(clustersFile);
+            if (clusterStore != null) return clusterStore.getClusters();
+
             reader = FileLoader.getBufferedInputStream(clustersFile);
             clusters = new ArrayList<>();
             while ((nextLine = reader.readLine()) != null) {
@@ -220,8 +404,7 @@ public class ReadData {
 
                 if (nextLine != null) {
                     nextKey = nextLine.trim();
-                    cluster = new Cluster(nextKey);
-                    clusters.add(cluster);
+                    members = new ArrayList<>();
 
                     nextLine = reader.readLine();
                     while ((nextLine != null) && !nextLine.trim().isEmpty()) {
@@ -229,10 +412,11 @@ public class ReadData {
                         nextLine = nextLine.substring(index+1);
                         index = nextLine.indexOf(",");
                         valueStr = nextLine.substring(0, index);
-                        cluster.list.add(valueStr.trim());
+                        members.add(valueStr.trim());
 
                         nextLine = reader.readLine();
                     }
+                    clusters.add(EventCluster.fromKeys(nextKey, members));
                 }
             }
 
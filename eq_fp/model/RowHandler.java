@@ -0,0 +1,25 @@
+/*
+ * RowHandler.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.model;
+
+
+/** Receives the data rows from a dataset file as they are read */
+public interface RowHandler {
+
+    /**
+     * Process the next data row.
+     * @param row the input column values for the row. The row object is reused,
+     * so it is only valid during the call.
+     * @return true to keep reading, false to stop.
+     * @throws Exception any error.
+     */
+    boolean nextRow(DataRow row) throws Exception;
+}
@@ -11,10 +11,6 @@
 package eq_fp.model;
 
 
-import org.licas.ai_solver.model.result.Cluster;
-import java.util.ArrayList;
-
-
 /** A significant event with details */
 public class TargetEvent {
 
@@ -24,17 +20,21 @@ public class TargetEvent {
     /** Date for the event - relates to the data row */
     public String date;
 
-    /** Data row with the event */
-    public ArrayList<String> dataRow;
+    /** Day number for the date in the event index */
+    public int day;
+
+    /** Data row with the event, as event ids in the event index */
+    public int[] dataRow;
 
     /** ML cluster with the event - other related events */
-    public Cluster cluster;
+    public EventCluster cluster;
 
 
     /** Create a new instance of TargetEvent */
     public TargetEvent() {
         event = null;
         date = null;
+        day = -1;
         dataRow = null;
         cluster = null;
     }
@@ -49,6 +49,7 @@ public class TargetEvent {
         cloneEvent = new TargetEvent();
         cloneEvent.event = event;
         cloneEvent.date = date;
+        cloneEvent.day = day;
         cloneEvent.dataRow = dataRow;
         cloneEvent.cluster = cluster;
 
@@ -0,0 +1,212 @@
+/*
+ * TestEQ_Pipeline.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.test;
+
+
+import eq_fp.algorithm.PipelineRunner;
+import eq_fp.util.DataConst;
+import eq_fp.util.EqConst;
+import eq_fp.util.Pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * Evaluate earthquake events on the USA dataset, with the steps run as pipelines.
+ * With the argument 'check', the pipeline itself is checked instead - that the
+ * output keeps its order and stays bounded, and that an error stops the run.
+ */
+public class TestEQ_Pipeline extends TestEQ {
+
+    /** Number of items the order check passes through */
+    protected static final int CHECKITEMS = 5000;
+
+    /** Queue size for the checks */
+    protected static final int CHECKQUEUE = 2;
+
+    /** Batch size for the checks */
+    protected static final int CHECKBATCH = 7;
+
+    /** Workers of the parallel stage in the checks */
+    protected static final int CHECKWORKERS = 4;
+
+    /** Time in milliseconds a stopped run may take to return */
+    protected static final long CHECKTIMEOUT = 10000;
+
+
+    /**
+     * Create a new instance of TestEQ_Pipeline.
+     * @param args input arguments.
+     */
+    public TestEQ_Pipeline(String[] args) {
+        super();
+
+        try {
+            String timeUnit;                                    //time unit
+            String[] formatArgs;                                //format arguments
+            String[] testArgs;                                  //test arguments
+            PipelineRunner runner;                              //to run the steps
+
+            if ((args.length > 0) && args[0].equals("check")) {
+                checkOrder();
+                checkFailure();
+                System.out.println("Finished");
+                return;
+            }
+
+            trainFile = (DataConst.DATAROOT + "usgs-devastator\\Earthquakes_USA.txt");
+            eventsFile = (DataConst.TESTROOT + "usa_events.txt");
+            clustersFile = (DataConst.TESTROOT + "usa_clusters.txt");
+            analysisFile = (DataConst.TESTROOT + "usa_analysis.txt");
+            predictFile = (DataConst.TESTROOT + "usa_predict.txt");
+            timeUnit =  EqConst.DAY;
+
+            formatArgs = new String[4];
+            formatArgs[0] = "14";           //maximum number of bands
+            formatArgs[1] = "0.5";          //band size
+            formatArgs[2] = "T";            //time separator in data file
+            formatArgs[3] = timeUnit;       //time unit
+
+            testArgs = new String[4];
+            testArgs[0] = "11";             //magnitude threshold for significant event
+            testArgs[1] = "200";            //number of days before to analyse
+            testArgs[2] = timeUnit;         //time unit
+            testArgs[3] = "5";              //accuracy percentage
+
+            //queue size in batches and raw rows in each batch
+            runner = new PipelineRunner(Pipeline.QUEUESIZE, Pipeline.BATCHSIZE);
+            runner.run(trainFile, eventsFile, clustersFile, analysisFile, predictFile, formatArgs, testArgs);
+
+            System.out.println(runner);
+
+            System.out.println("Finished");
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();;
+        }
+    }
+
+
+    /**
+     * Pass numbered items through a stage with several workers that take different
+     * times, into a slow last stage. The items must arrive in order, and the number
+     * of items between the source and the last stage must stay within what the
+     * queues, the batches being filled and the workers can hold.
+     * @throws Exception any error, or if the order or the bound is broken.
+     */
+    protected void checkOrder() throws Exception {
+        long bound;                                         //most items that can be in the pipeline
+        AtomicLong created;                                 //items the source has created
+        AtomicLong maxAhead;                                //most items the source was ahead by
+        ArrayList<Integer> received;                        //items the last stage received
+        Pipeline pipeline;                                  //the pipeline
+
+        created = new AtomicLong();
+        maxAhead = new AtomicLong();
+        received = new ArrayList<>();
+        pipeline = new Pipeline(CHECKQUEUE);
+        pipeline.setSource("count", CHECKBATCH, (Pipeline.Output<Integer> out) -> {
+            for (int i = 0; i < CHECKITEMS; i++) {
+                created.incrementAndGet();
+                out.emit(i);
+            }
+        });
+        pipeline.addStage("shuffle", CHECKWORKERS, CHECKBATCH, (List<Integer> items, Pipeline.Output<Integer> out) -> {
+            //the batches take different times, so the workers finish out of order
+            Thread.sleep(items.get(0) % 3);
+            for (Integer item : items) {
+                out.emit(item);
+            }
+        });
+        pipeline.addStage("collect", 1, CHECKBATCH, (List<Integer> items, Pipeline.Output<Object> out) -> {
+            received.addAll(items);
+            maxAhead.accumulateAndGet(created.get() - received.size(), Math::max);
+            Thread.sleep(1);
+        });
+        pipeline.run();
+
+        for (int i = 0; i < CHECKITEMS; i++) {
+            if ((i >= received.size()) || (received.get(i) != i)) {
+                throw new IllegalStateException("Item " + i + " is out of order");
+            }
+        }
+        if (received.size() != CHECKITEMS) {
+            throw new IllegalStateException("Received " + received.size() + " items, not " + CHECKITEMS);
+        }
+
+        //each queue, the batch being filled before it and the batch each worker has
+        bound = (((CHECKQUEUE + 1 + CHECKWORKERS) + (CHECKQUEUE + 1 + 1)) * CHECKBATCH) + 1;
+        if (maxAhead.get() > bound) {
+            throw new IllegalStateException("The source was " + maxAhead.get() + " items ahead, more than " + bound);
+        }
+        System.out.println("Order check: " + CHECKITEMS + " items in order, at most " + maxAhead.get()
+                + " in the pipeline, bound " + bound);
+        System.out.println(pipeline);
+    }
+
+    /**
+     * Run a source that does not end into a stage that fails, while the source waits
+     * on the full queue and the stage after waits for input. The run must stop and
+     * throw the error of the failed stage.
+     * @throws Exception any error, or if the run does not stop with the stage error.
+     */
+    protected void checkFailure() throws Exception {
+        Thread runThread;                                   //thread the pipeline runs on
+        AtomicReference<Exception> thrown;                  //error from the run
+        Exception failure;                                  //error the stage throws
+        Pipeline pipeline;                                  //the pipeline
+
+        failure = new IllegalStateException("Stage failure");
+        thrown = new AtomicReference<>();
+        pipeline = new Pipeline(1);
+        pipeline.setSource("endless", 1, (Pipeline.Output<Integer> out) -> {
+            for (int i = 0; ; i++) {
+                out.emit(i);
+            }
+        });
+        pipeline.addStage("fail", 1, 1, (List<Integer> items, Pipeline.Output<Integer> out) -> {
+            //give the source time to fill the queue and wait on it
+            Thread.sleep(200);
+            throw failure;
+        });
+        pipeline.addStage("wait", 1, 1, (List<Integer> items, Pipeline.Output<Object> out) -> {
+        });
+
+        runThread = new Thread(() -> {
+            try {
+                pipeline.run();
+            }
+            catch (Exception ex) {
+                thrown.set(ex);
+            }
+        });
+        runThread.start();
+        runThread.join(CHECKTIMEOUT);
+
+        if (runThread.isAlive()) {
+            runThread.interrupt();
+            throw new IllegalStateException("The pipeline did not stop after a stage failed");
+        }
+        if (thrown.get() != failure) {
+            throw new IllegalStateException("The pipeline threw " + thrown.get() + ", not the stage failure");
+        }
+        System.out.println("Failure check: the stage failure stopped the run and was thrown");
+    }
+
+
+    /** Main method */
+    public static void main(String[] args) {
+        new TestEQ_Pipeline(args);
+    }
+}
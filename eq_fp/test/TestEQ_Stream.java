@@ -0,0 +1,137 @@
+/*
+ * TestEQ_Stream.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.test;
+
+
+import eq_fp.algorithm.OnlineSimulate;
+import eq_fp.model.FeedSource;
+import eq_fp.model.ReadData;
+import eq_fp.util.DataConst;
+import eq_fp.util.EqConst;
+
+import java.io.FileInputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Evaluate earthquake events on the Greece dataset, and then run the predictions on
+ * the rows that are added to the dataset file, as they arrive. It runs until it is
+ * stopped. With the argument 'check', the last rows of the dataset are streamed
+ * instead, and the matches are checked against a batch run over the same days.
+ */
+public class TestEQ_Stream extends TestEQ {
+
+    /** Number of raw rows at the end of the dataset that the check streams */
+    protected static final int CHECKROWS = 500;
+
+
+    /**
+     * Create a new instance of TestEQ_Stream.
+     * @param args input arguments.
+     */
+    public TestEQ_Stream(String[] args) {
+        super();
+
+        try {
+            String timeUnit;                                    //time unit
+            String[] formatArgs;                                //format arguments
+            String[] testArgs;                                  //test arguments
+            OnlineSimulate sim;                                 //to predict events as they arrive
+
+            trainFile = (DataConst.DATAROOT + "greece_earthquake\\Earthquakes_Greece.txt");
+            eventsFile = (DataConst.TESTROOT + "greece_events.txt");
+            clustersFile = (DataConst.TESTROOT + "greece_clusters.txt");
+            analysisFile = (DataConst.TESTROOT + "greece_analysis.txt");
+            timeUnit =  EqConst.DAY;
+
+            formatArgs = new String[4];
+            formatArgs[0] = "14";           //maximum number of bands
+            formatArgs[1] = "0.5";          //band size
+            formatArgs[2] = "T";            //time separator in data file
+            formatArgs[3] = timeUnit;       //time unit
+
+            ReadData.formatData(trainFile, eventsFile, clustersFile, formatArgs);
+
+            testArgs = new String[4];
+            testArgs[0] = "11";             //magnitude threshold for significant event
+            testArgs[1] = "200";            //number of days before to analyse
+            testArgs[2] = timeUnit;         //time unit
+            testArgs[3] = "5";              //accuracy percentage
+
+            if ((args.length > 0) && args[0].equals("check")) {
+                checkStream(formatArgs, testArgs);
+                System.out.println("Finished");
+                return;
+            }
+
+            analyseData(testArgs);
+
+            //follow the dataset file, the rows that are already formatted are skipped
+            sim = new OnlineSimulate(testArgs, eventsFile, clustersFile, analysisFile);
+            sim.run(FeedSource.tailFile(trainFile, FeedSource.POLLTIME), eventsFile, clustersFile, formatArgs);
+
+            System.out.println("Finished");
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();;
+        }
+    }
+
+
+    /**
+     * Format and analyse the dataset without its last rows, then stream the whole
+     * dataset, so only the last rows are added. The matches found as each day
+     * arrives must be the same as a batch run over the added days.
+     * @param formatArgs format arguments.
+     * @param testArgs test arguments.
+     * @throws Exception any error, or if the matches are not the same.
+     */
+    protected void checkStream(String[] formatArgs, String[] testArgs) throws Exception {
+        String checkFile;                                   //dataset without its last rows
+        List<String> lines;                                 //dataset lines
+        ArrayList<String> online, batch;                    //matches of each run
+        OnlineSimulate sim;                                 //to predict events as they arrive
+
+        try {
+            checkFile = (DataConst.TESTROOT + "greece_stream_check.txt");
+            lines = Files.readAllLines(Paths.get(trainFile));
+            Files.write(Paths.get(checkFile), lines.subList(0, Math.max(lines.size() - CHECKROWS, 0)));
+
+            ReadData.formatData(checkFile, eventsFile, clustersFile, formatArgs);
+            analyseData(testArgs);
+
+            online = new ArrayList<>();
+            batch = new ArrayList<>();
+            sim = new OnlineSimulate(testArgs, eventsFile, clustersFile, analysisFile);
+            sim.setMatchHandler((targetKey, compareKey) -> online.add(targetKey + "   " + compareKey));
+            sim.run(new FileInputStream(trainFile), eventsFile, clustersFile, formatArgs);
+            sim.replay(eventsFile, (targetKey, compareKey) -> batch.add(targetKey + "   " + compareKey));
+
+            if (!online.equals(batch)) {
+                throw new IllegalStateException("Online matches " + online.size()
+                        + " are not the same as the batch matches " + batch.size());
+            }
+            System.out.println("Online matches: " + online.size() + ", the same as the batch run");
+        }
+        catch (Exception ex) {
+            throw ex;
+        }
+    }
+
+
+    /** Main method */
+    public static void main(String[] args) {
+        new TestEQ_Stream(args);
+    }
+}
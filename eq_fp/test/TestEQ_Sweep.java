@@ -0,0 +1,63 @@
+/*
+ * TestEQ_Sweep.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.test;
+
+
+import eq_fp.algorithm.ScoreCache;
+import eq_fp.algorithm.SweepRunner;
+import eq_fp.util.DataConst;
+import eq_fp.util.EqConst;
+
+
+/** Evaluate earthquake events on the USA dataset for a grid of parameters */
+public class TestEQ_Sweep extends TestEQ {
+
+    /**
+     * Create a new instance of TestEQ_Sweep.
+     * @param args input arguments.
+     */
+    public TestEQ_Sweep(String[] args) {
+        super();
+
+        try {
+            SweepRunner sweep;                                  //to run the scenarios
+            ScoreCache scoreCache;                              //target scores shared by the scenarios
+
+            trainFile = (DataConst.DATAROOT + "usgs-devastator\\Earthquakes_USA.txt");
+            sweep = new SweepRunner(trainFile, DataConst.TESTROOT, "usa_sweep");
+            //the scenarios share most of their scores, a single run does not
+            scoreCache = new ScoreCache();
+            sweep.setScoreCache(scoreCache);
+
+            // format with each number of bands and band size, then analyse with each
+            // magnitude threshold and number of days before, then predict with each
+            // accuracy percentage
+            sweep.addGrid(new String[] {"14"}, new String[] {"0.5", "1.0"}, "T", EqConst.DAY,
+                    new String[] {"11", "12"}, new String[] {"100", "200"}, new String[] {"5", "10"});
+
+            for (String predictFile : sweep.run()) {
+                System.out.println("Predictions: " + predictFile);
+            }
+            System.out.println(scoreCache);
+
+            System.out.println("Finished");
+        }
+        catch (Exception ex) {
+            ex.printStackTrace();;
+        }
+    }
+
+
+    /** Main method */
+    public static void main(String[] args) {
+        new TestEQ_Sweep(args);
+    }
+}
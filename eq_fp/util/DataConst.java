@@ -35,6 +35,12 @@ public class DataConst
     /** Defines tokenizer type tag */
     public static final String TOKENIZER = "Tokenizer";
 
+    /** Names the project frequency grid clustering engine */
+    public static final String GRIDENGINE = "grid";
+
+    /** Names the licas frequency grid clustering engine */
+    public static final String LICASENGINE = "licas";
+
     /** Defines key separator tag */
     public static final String KEYSEP = ":";
 
@@ -0,0 +1,161 @@
+/*
+ * EventCode.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.util;
+
+
+/**
+ * Packs an event key of the form lat:lng:band into a single long value, so events can
+ * be stored in primitive arrays and their parts read without parsing the text.
+ * Each part is stored as a sign bit and a magnitude, so that a key such as -0:22:9,
+ * which the grid formatting can produce, is kept distinct from 0:22:9.
+ */
+public class EventCode {
+
+    /** Number of bits for each part of the key */
+    public static final int PARTBITS = 21;
+
+    /** Largest magnitude for a key part */
+    public static final int MAXVALUE = ((1 << (PARTBITS - 1)) - 1);
+
+    /** Sign bit for a key part */
+    private static final long SIGN = (1L << (PARTBITS - 1));
+
+    /** Mask for a key part */
+    private static final long PARTMASK = ((1L << PARTBITS) - 1);
+
+    /** Mask for the coordinate parts */
+    private static final long CELLMASK = ((1L << (2 * PARTBITS)) - 1);
+
+
+    /**
+     * Convert an event key into its code.
+     * @param eventKey event key of the form lat:lng:band.
+     * @return the packed code.
+     * @throws NumberFormatException if the key is not in the correct form.
+     */
+    public static long toCode(String eventKey) {
+        int i;
+        int pos;                                            //position in the key
+        int value;                                          //part value
+        int digits;                                         //number of digits read
+        boolean negative;                                   //part is negative
+        char ch;                                            //next character
+        long code;                                          //packed code
+
+        code = 0;
+        pos = 0;
+        for (i = 0; i < 3; i++) {
+            negative = false;
+            if ((pos < eventKey.length()) && (eventKey.charAt(pos) == '-')) {
+                negative = true;
+                pos++;
+            }
+
+            value = 0;
+            digits = 0;
+            while ((pos < eventKey.length()) && ((ch = eventKey.charAt(pos)) >= '0') && (ch <= '9')) {
+                value = ((value * 10) + (ch - '0'));
+                if (value > MAXVALUE) throw new NumberFormatException("Event key part too large: " + eventKey);
+                digits++;
+                pos++;
+            }
+            if (digits == 0) throw new NumberFormatException("Invalid event key: " + eventKey);
+
+            code |= (((negative ? SIGN : 0) | value) << (i * PARTBITS));
+
+            if (i < 2) {
+                if ((pos >= eventKey.length()) || (eventKey.charAt(pos) != DataConst.KEYSEP.charAt(0))) {
+                    throw new NumberFormatException("Invalid event key: " + eventKey);
+                }
+                pos++;
+            }
+        }
+        if (pos != eventKey.length()) throw new NumberFormatException("Invalid event key: " + eventKey);
+
+        return code;
+    }
+
+    /**
+     * Convert an event code back into its key.
+     * @param code the packed code.
+     * @return event key of the form lat:lng:band.
+     */
+    public static String toKey(long code) {
+        StringBuilder key;                                  //event key
+
+        key = new StringBuilder(16);
+        appendPart(key, code);
+        key.append(DataConst.KEYSEP);
+        appendPart(key, (code >>> PARTBITS));
+        key.append(DataConst.KEYSEP);
+        appendPart(key, (code >>> (2 * PARTBITS)));
+
+        return key.toString();
+    }
+
+    /**
+     * Add a key part to the key text.
+     * @param key the key text.
+     * @param part the part, in the low bits.
+     */
+    private static void appendPart(StringBuilder key, long part) {
+        if ((part & SIGN) != 0) key.append('-');
+        key.append((int) (part & MAXVALUE));
+    }
+
+    /**
+     * Get a key part as a number.
+     * @param part the part, in the low bits.
+     * @return the part value.
+     */
+    private static int partValue(long part) {
+        int value;                                          //part value
+
+        value = (int) (part & MAXVALUE);
+        return (((part & SIGN) != 0) ? -value : value);
+    }
+
+    /**
+     * Get the latitude part of an event code.
+     * @param code the packed code.
+     * @return the latitude grid value.
+     */
+    public static int lat(long code) {
+        return partValue(code & PARTMASK);
+    }
+
+    /**
+     * Get the longitude part of an event code.
+     * @param code the packed code.
+     * @return the longitude grid value.
+     */
+    public static int lng(long code) {
+        return partValue((code >>> PARTBITS) & PARTMASK);
+    }
+
+    /**
+     * Get the magnitude band part of an event code.
+     * @param code the packed code.
+     * @return the magnitude band.
+     */
+    public static int band(long code) {
+        return partValue((code >>> (2 * PARTBITS)) & PARTMASK);
+    }
+
+    /**
+     * Get the code for the location only, without the magnitude band.
+     * @param code the packed code.
+     * @return the location code.
+     */
+    public static long cell(long code) {
+        return (code & CELLMASK);
+    }
+}
@@ -0,0 +1,634 @@
+/*
+ * Pipeline.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.util;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Runs a chain of stages at the same time, each on its own threads, with the items
+ * passed between them in batches through bounded queues. A stage that gets ahead
+ * waits when the queue to the next stage is full, so the memory used stays bounded
+ * and the chain runs at the speed of its slowest stage. A stage can have more than
+ * one worker, and its output is still passed on in the order of its input. The time
+ * each stage spends working and waiting is kept, to find the slowest stage.
+ */
+public class Pipeline {
+
+    /** Default number of batches each queue can hold */
+    public static final int QUEUESIZE = 8;
+
+    /** Default number of items in a batch */
+    public static final int BATCHSIZE = 256;
+
+
+    /** Number of batches each queue can hold */
+    protected int queueSize;
+
+    /** The first stage, which creates the items */
+    protected Source<?> source;
+
+    /** Name of the first stage */
+    protected String sourceName;
+
+    /** Output batch size of the first stage */
+    protected int sourceBatch;
+
+    /** Each later stage */
+    protected ArrayList<Stage<?, ?>> stages;
+
+    /** Name of each later stage */
+    protected ArrayList<String> names;
+
+    /** Number of workers for each later stage */
+    protected ArrayList<Integer> numWorkers;
+
+    /** Output batch size for each later stage */
+    protected ArrayList<Integer> batchSizes;
+
+    /** Metrics for each stage, from the last run, starting with the first stage */
+    protected ArrayList<StageMetrics> metrics;
+
+
+    /** Create a new instance of Pipeline, with the default queue size */
+    public Pipeline() {
+        this(QUEUESIZE);
+    }
+
+    /**
+     * Create a new instance of Pipeline.
+     * @param queueSize number of batches each queue can hold.
+     */
+    public Pipeline(int queueSize) {
+        this.queueSize = Math.max(queueSize, 1);
+        source = null;
+        sourceName = null;
+        sourceBatch = BATCHSIZE;
+        stages = new ArrayList<>();
+        names = new ArrayList<>();
+        numWorkers = new ArrayList<>();
+        batchSizes = new ArrayList<>();
+        metrics = new ArrayList<>();
+    }
+
+    /**
+     * Set the first stage, which creates the items.
+     * @param name the stage name.
+     * @param batchSize number of items in each batch it passes on.
+     * @param source the stage.
+     * @param <O> the item type.
+     */
+    public <O> void setSource(String name, int batchSize, Source<O> source) {
+        this.source = source;
+        sourceName = name;
+        sourceBatch = Math.max(batchSize, 1);
+    }
+
+    /**
+     * Add the next stage.
+     * @param name the stage name.
+     * @param workers number of workers, which should be 1 if the stage keeps any state
+     * between batches.
+     * @param batchSize number of items in each batch it passes on.
+     * @param stage the stage.
+     * @param <I> the input item type.
+     * @param <O> the output item type.
+     */
+    public <I, O> void addStage(String name, int workers, int batchSize, Stage<I, O> stage) {
+        stages.add(stage);
+        names.add(name);
+        numWorkers.add(Math.max(workers, 1));
+        batchSizes.add(Math.max(batchSize, 1));
+    }
+
+    /**
+     * Run the stages until the source has no more items and every stage has finished
+     * with them. If a stage fails, the others are stopped.
+     * @throws Exception the first error from a stage.
+     */
+    public void run() throws Exception {
+        int s, w;
+        int numThreads;                                     //threads for every stage
+        long startTime;                                     //start time in nanoseconds
+        ArrayList<ArrayBlockingQueue<Batch>> queues;        //queue into each stage
+        ExecutorService executor;                           //to run the stages
+        ExecutorCompletionService<Void> completion;         //to see the first error
+
+        if (source == null) throw new IllegalStateException("The pipeline has no source");
+
+        //the queue into each later stage
+        queues = new ArrayList<>();
+        metrics = new ArrayList<>();
+        metrics.add(new StageMetrics(sourceName, 1));
+        numThreads = 1;
+        for (s = 0; s < stages.size(); s++) {
+            queues.add(new ArrayBlockingQueue<>(queueSize));
+            metrics.add(new StageMetrics(names.get(s), numWorkers.get(s)));
+            numThreads += numWorkers.get(s);
+        }
+
+        executor = Executors.newFixedThreadPool(numThreads);
+        completion = new ExecutorCompletionService<>(executor);
+        startTime = System.nanoTime();
+        try {
+            completion.submit(() -> runSource((queues.isEmpty() ? null : queues.get(0)), startTime));
+            for (s = 0; s < stages.size(); s++) {
+                StageRun stageRun = new StageRun(s, queues.get(s),
+                        ((s + 1 < stages.size()) ? queues.get(s + 1) : null), startTime);
+                for (w = 0; w < numWorkers.get(s); w++) {
+                    completion.submit(stageRun::runWorker);
+                }
+            }
+
+            for (w = 0; w < numThreads; w++) {
+                try {
+                    completion.take().get();
+                }
+                catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof Exception) throw (Exception) ex.getCause();
+                    throw ex;
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Run the source, passing its items on in batches.
+     * @param output queue into the next stage, or null if there are no later stages.
+     * @param startTime start time of the run in nanoseconds.
+     * @return null.
+     * @throws Exception any error.
+     */
+    @SuppressWarnings("unchecked")
+    private Void runSource(ArrayBlockingQueue<Batch> output, long startTime) throws Exception {
+        BatchOutput<Object> out;                            //batches the items
+        StageMetrics stageMetrics;                          //metrics for the source
+
+        stageMetrics = metrics.get(0);
+        out = new BatchOutput<>(output, sourceBatch, stageMetrics);
+        ((Source<Object>) source).run(out);
+        out.flush();
+        out.end();
+        stageMetrics.finish(startTime);
+
+        return null;
+    }
+
+    /**
+     * Get the metrics for each stage, from the last run.
+     * @return the metrics, in stage order.
+     */
+    public ArrayList<StageMetrics> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Get the name of the stage that was busy for longest in the last run, for each of
+     * its workers. The run cannot be quicker than this stage.
+     * @return the stage name.
+     */
+    public String slowestStage() {
+        StageMetrics slowest;                               //slowest stage
+
+        slowest = null;
+        for (StageMetrics stageMetrics : metrics) {
+            if ((slowest == null)
+                    || ((stageMetrics.busyTime() / stageMetrics.workers) > (slowest.busyTime() / slowest.workers))) {
+                slowest = stageMetrics;
+            }
+        }
+
+        return ((slowest != null) ? slowest.name : null);
+    }
+
+    /**
+     * Return a description of the metrics from the last run.
+     * @return one line for each stage.
+     */
+    public String toString() {
+        StringBuilder descr;                                //description
+
+        descr = new StringBuilder("Pipeline:");
+        for (StageMetrics stageMetrics : metrics) {
+            descr.append("\n   ").append(stageMetrics);
+        }
+
+        return descr.toString();
+    }
+
+
+    /**
+     * The first stage, which creates the items.
+     * @param <O> the item type.
+     */
+    public interface Source<O> {
+
+        /**
+         * Create every item and pass it on.
+         * @param out receives the items.
+         * @throws Exception any error.
+         */
+        void run(Output<O> out) throws Exception;
+    }
+
+
+    /**
+     * A later stage, which processes the items of the stage before.
+     * @param <I> the input item type.
+     * @param <O> the output item type.
+     */
+    public interface Stage<I, O> {
+
+        /**
+         * Process a batch of items and pass on any new ones.
+         * @param batch the input items, in order.
+         * @param out receives the output items.
+         * @throws Exception any error.
+         */
+        void process(List<I> batch, Output<O> out) throws Exception;
+    }
+
+
+    /**
+     * Receives the items a stage passes on.
+     * @param <O> the item type.
+     */
+    public interface Output<O> {
+
+        /**
+         * Pass on an item.
+         * @param item the item.
+         * @throws Exception any error, such as being stopped while the next queue is full.
+         */
+        void emit(O item) throws Exception;
+    }
+
+
+    /** A batch of items, with its position in the stage output */
+    protected static class Batch {
+
+        /** Batch number, in the stage output order */
+        protected long number;
+
+        /** The items, or null for the end of the items */
+        protected List<Object> items;
+
+
+        /**
+         * Create a new instance of Batch.
+         * @param number batch number.
+         * @param items the items, or null for the end of the items.
+         */
+        protected Batch(long number, List<Object> items) {
+            this.number = number;
+            this.items = items;
+        }
+    }
+
+
+    /**
+     * Puts the items a stage passes on into batches, for the next queue.
+     * @param <O> the item type.
+     */
+    protected static class BatchOutput<O> implements Output<O> {
+
+        /** Queue into the next stage, or null if it is the last stage */
+        protected ArrayBlockingQueue<Batch> queue;
+
+        /** Number of items in each batch */
+        protected int batchSize;
+
+        /** Metrics for the stage */
+        protected StageMetrics stageMetrics;
+
+        /** The batch being filled */
+        protected ArrayList<Object> items;
+
+        /** Number of the next batch */
+        protected long nextBatch;
+
+
+        /**
+         * Create a new instance of BatchOutput.
+         * @param queue queue into the next stage, or null if it is the last stage.
+         * @param batchSize number of items in each batch.
+         * @param stageMetrics metrics for the stage.
+         */
+        protected BatchOutput(ArrayBlockingQueue<Batch> queue, int batchSize, StageMetrics stageMetrics) {
+            this.queue = queue;
+            this.batchSize = batchSize;
+            this.stageMetrics = stageMetrics;
+            items = new ArrayList<>(batchSize);
+            nextBatch = 0;
+        }
+
+        /**
+         * Pass on an item, and the batch once it is full.
+         * @param item the item.
+         * @throws Exception any error.
+         */
+        public void emit(O item) throws Exception {
+            stageMetrics.itemsOut.incrementAndGet();
+            if (queue == null) return;
+
+            items.add(item);
+            if (items.size() >= batchSize) flush();
+        }
+
+        /**
+         * Pass on the batch being filled, if it has any items, waiting for room in the queue.
+         * @throws Exception any error.
+         */
+        protected void flush() throws Exception {
+            if (items.isEmpty()) return;
+
+            put(new Batch(nextBatch++, items));
+            items = new ArrayList<>(batchSize);
+        }
+
+        /**
+         * Mark the end of the items.
+         * @throws Exception any error.
+         */
+        protected void end() throws Exception {
+            if (queue != null) put(new Batch(nextBatch, null));
+        }
+
+        /**
+         * Put a batch in the queue, waiting for room.
+         * @param batch the batch.
+         * @throws Exception any error.
+         */
+        private void put(Batch batch) throws Exception {
+            long waitStart;                                 //start of the wait
+
+            waitStart = System.nanoTime();
+            queue.put(batch);
+            stageMetrics.outputWait.addAndGet(System.nanoTime() - waitStart);
+            if (batch.items != null) stageMetrics.batchesOut.incrementAndGet();
+        }
+    }
+
+
+    /** The workers of a later stage, which pass the output on in the input order */
+    protected class StageRun {
+
+        /** Stage number, of the later stages */
+        protected int number;
+
+        /** Queue into the stage */
+        protected ArrayBlockingQueue<Batch> input;
+
+        /** Output batches of the stage */
+        protected BatchOutput<Object> output;
+
+        /** Metrics for the stage */
+        protected StageMetrics stageMetrics;
+
+        /** Start time of the run in nanoseconds */
+        protected long startTime;
+
+        /** Number of the next input batch whose output can be passed on */
+        protected long nextTurn;
+
+        /** Number of workers still running */
+        protected AtomicInteger running;
+
+
+        /**
+         * Create a new instance of StageRun.
+         * @param number stage number, of the later stages.
+         * @param input queue into the stage.
+         * @param next queue into the next stage, or null if it is the last stage.
+         * @param startTime start time of the run in nanoseconds.
+         */
+        protected StageRun(int number, ArrayBlockingQueue<Batch> input, ArrayBlockingQueue<Batch> next,
+                           long startTime) {
+            this.number = number;
+            this.input = input;
+            this.startTime = startTime;
+            stageMetrics = metrics.get(number + 1);
+            output = new BatchOutput<>(next, batchSizes.get(number), stageMetrics);
+            nextTurn = 0;
+            running = new AtomicInteger(numWorkers.get(number));
+        }
+
+        /**
+         * Process input batches until the end of the items. The output of each batch is
+         * kept until the batches before it have been passed on.
+         * @return null.
+         * @throws Exception any error.
+         */
+        @SuppressWarnings("unchecked")
+        protected Void runWorker() throws Exception {
+            long time;                                      //start of a step
+            Batch batch;                                    //input batch
+            ArrayList<Object> batchOutput;                  //output of the batch
+            Stage<Object, Object> stage;                    //the stage
+
+            stage = (Stage<Object, Object>) stages.get(number);
+            while (true) {
+                time = System.nanoTime();
+                batch = input.take();
+                stageMetrics.inputWait.addAndGet(System.nanoTime() - time);
+
+                //the end is left in the queue for the other workers
+                if (batch.items == null) {
+                    input.put(batch);
+                    break;
+                }
+
+                time = System.nanoTime();
+                batchOutput = new ArrayList<>();
+                stage.process(batch.items, batchOutput::add);
+                stageMetrics.busy.addAndGet(System.nanoTime() - time);
+                stageMetrics.itemsIn.addAndGet(batch.items.size());
+                stageMetrics.batchesIn.incrementAndGet();
+
+                passOn(batch.number, batchOutput);
+            }
+
+            //the last worker to finish passes on the rest, and the end
+            if (running.decrementAndGet() == 0) {
+                output.flush();
+                output.end();
+                stageMetrics.finish(startTime);
+            }
+
+            return null;
+        }
+
+        /**
+         * Pass on the output of an input batch, once it is its turn.
+         * @param batchNumber the input batch number.
+         * @param batchOutput the output items.
+         * @throws Exception any error.
+         */
+        private void passOn(long batchNumber, ArrayList<Object> batchOutput) throws Exception {
+            long waitStart;                                 //start of the wait
+
+            waitStart = System.nanoTime();
+            synchronized (this) {
+                while (nextTurn != batchNumber) wait();
+                stageMetrics.outputWait.addAndGet(System.nanoTime() - waitStart);
+
+                for (Object item : batchOutput) {
+                    output.emit(item);
+                }
+                nextTurn++;
+                notifyAll();
+            }
+        }
+    }
+
+
+    /** The counts and times for a stage */
+    public static class StageMetrics {
+
+        /** The stage name */
+        protected String name;
+
+        /** Number of workers */
+        protected int workers;
+
+        /** Number of items processed */
+        protected AtomicLong itemsIn;
+
+        /** Number of items passed on */
+        protected AtomicLong itemsOut;
+
+        /** Number of batches processed */
+        protected AtomicLong batchesIn;
+
+        /** Number of batches passed on */
+        protected AtomicLong batchesOut;
+
+        /** Time in nanoseconds spent processing, over every worker */
+        protected AtomicLong busy;
+
+        /** Time in nanoseconds spent waiting for input, over every worker */
+        protected AtomicLong inputWait;
+
+        /** Time in nanoseconds spent waiting to pass output on, over every worker */
+        protected AtomicLong outputWait;
+
+        /** Time in nanoseconds from the start of the run until the stage finished */
+        protected volatile long elapsed;
+
+
+        /**
+         * Create a new instance of StageMetrics.
+         * @param name the stage name.
+         * @param workers number of workers.
+         */
+        protected StageMetrics(String name, int workers) {
+            this.name = name;
+            this.workers = workers;
+            itemsIn = new AtomicLong();
+            itemsOut = new AtomicLong();
+            batchesIn = new AtomicLong();
+            batchesOut = new AtomicLong();
+            busy = new AtomicLong();
+            inputWait = new AtomicLong();
+            outputWait = new AtomicLong();
+            elapsed = 0;
+        }
+
+        /**
+         * Record that the stage has finished.
+         * @param startTime start time of the run in nanoseconds.
+         */
+        protected void finish(long startTime) {
+            elapsed = (System.nanoTime() - startTime);
+        }
+
+        /**
+         * Get the stage name.
+         * @return the stage name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the number of items processed, or created by the source.
+         * @return the number of items.
+         */
+        public long getItems() {
+            return ((batchesIn.get() > 0) ? itemsIn.get() : itemsOut.get());
+        }
+
+        /**
+         * Get the time spent processing, over every worker. For the source this is the
+         * time it ran for, less the time it waited to pass its items on.
+         * @return the time in milliseconds.
+         */
+        public long busyTime() {
+            if (batchesIn.get() == 0) return Math.max(0, ((elapsed - outputWait.get()) / 1000000));
+            return (busy.get() / 1000000);
+        }
+
+        /**
+         * Get the time spent waiting for input, over every worker.
+         * @return the time in milliseconds.
+         */
+        public long inputWaitTime() {
+            return (inputWait.get() / 1000000);
+        }
+
+        /**
+         * Get the time spent waiting to pass output on, over every worker.
+         * @return the time in milliseconds.
+         */
+        public long outputWaitTime() {
+            return (outputWait.get() / 1000000);
+        }
+
+        /**
+         * Get the time from the start of the run until the stage finished.
+         * @return the time in milliseconds.
+         */
+        public long elapsedTime() {
+            return (elapsed / 1000000);
+        }
+
+        /**
+         * Get the number of items processed for each second the stage ran for.
+         * @return the throughput.
+         */
+        public double throughput() {
+            return ((elapsed > 0) ? (getItems() * 1.0e9 / elapsed) : 0);
+        }
+
+        /**
+         * Return a description of the metrics.
+         * @return the counts and times.
+         */
+        public String toString() {
+            return String.format("%-10s workers %2d, items %8d, batches in %6d out %6d, busy %6d ms, "
+                            + "input wait %6d ms, output wait %6d ms, elapsed %6d ms, %10.1f items/s",
+                    name, workers, getItems(), batchesIn.get(), batchesOut.get(), busyTime(), inputWaitTime(),
+                    outputWaitTime(), elapsedTime(), throughput());
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * TimeParser.java
+ *
+ * Created on 18 October 2026
+ *
+ * Version 1.0
+ *
+ * Copyright (c) Kieran Greer
+ */
+
+package eq_fp.util;
+
+
+import java.text.ParseException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+
+/**
+ * Parses timestamps of the form yyyy-MM-dd[sep]HH:mm:ss.SSS, as in the USGS and ISO-8601
+ * data, without creating any objects. The date can also use slashes, as in the date keys
+ * of the events file. Minutes, seconds and milliseconds are optional, and anything after
+ * them, such as a zone suffix, is ignored. Times are read in the local time zone, the same
+ * as the date keys have always been read.
+ * The parsed parts are kept in the parser, so one parser should be used by one thread.
+ */
+public class TimeParser {
+
+    /** Days from year 0 to 1970 in the proleptic Gregorian calendar */
+    private static final long DAYS_0000_TO_1970 = 719528;
+
+
+    /** Year */
+    protected int year;
+
+    /** Month, from 1 */
+    protected int month;
+
+    /** Day of the month, from 1 */
+    protected int day;
+
+    /** Hour of the day */
+    protected int hour;
+
+    /** Minute */
+    protected int minute;
+
+    /** Second */
+    protected int second;
+
+    /** Milliseconds */
+    protected int millis;
+
+    /** Position reached in the text */
+    private int pos;
+
+    /** Calendar for the local time zone, reused for each time */
+    private final GregorianCalendar calendar;
+
+
+    /**
+     * Create a new instance of TimeParser.
+     */
+    public TimeParser() {
+        calendar = new GregorianCalendar();
+    }
+
+    /**
+     * Get the id of the local time zone, that times in milliseconds are given in.
+     * @return the time zone id.
+     */
+    public static String zoneId() {
+        return TimeZone.getDefault().getID();
+    }
+
+    /**
+     * Parse a timestamp.
+     * @param text the timestamp text.
+     * @param timeSep separator between the date and the time.
+     * @return true if it was parsed, false if it is not in the correct form.
+     */
+    public boolean parse(CharSequence text, String timeSep) {
+        char dateSep;                                       //separator in the date
+
+        pos = 0;
+        minute = 0;
+        second = 0;
+        millis = 0;
+
+        //date part
+        if (((year = readNumber(text, 4)) < 0) || (pos != 4)) return false;
+        if (pos >= text.length()) return false;
+        dateSep = text.charAt(pos);
+        if ((dateSep != '-') && (dateSep != '/')) return false;
+        pos++;
+        if ((month = readNumber(text, 2)) < 1 || (month > 12)) return false;
+        if ((pos >= text.length()) || (text.charAt(pos) != dateSep)) return false;
+        pos++;
+        if ((day = readNumber(text, 2)) < 1 || (day > 31)) return false;
+
+        //time part, hours at least
+        if (!matches(text, timeSep)) return false;
+        pos += timeSep.length();
+        if ((hour = readNumber(text, 2)) < 0 || (hour > 23)) return false;
+        if ((pos < text.length()) && (text.charAt(pos) == ':')) {
+            pos++;
+            if ((minute = readNumber(text, 2)) < 0 || (minute > 59)) return false;
+            if ((pos < text.length()) && (text.charAt(pos) == ':')) {
+                pos++;
+                if ((second = readNumber(text, 2)) < 0 || (second > 60)) return false;
+                if ((pos < text.length()) && (text.charAt(pos) == '.')) {
+                    pos++;
+                    readMillis(text);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Read an unsigned number from the current position.
+     * @param text the timestamp text.
+     * @param maxDigits maximum number of digits to read.
+     * @return the number, or -1 if there are no digits.
+     */
+    private int readNumber(CharSequence text, int maxDigits) {
+        int value;                                          //number value
+        int digits;                                         //number of digits read
+        char ch;                                            //next character
+
+        value = 0;
+        digits = 0;
+        while ((digits < maxDigits) && (pos < text.length())
+                && ((ch = text.charAt(pos)) >= '0') && (ch <= '9')) {
+            value = ((value * 10) + (ch - '0'));
+            digits++;
+            pos++;
+        }
+
+        return ((digits > 0) ? value : -1);
+    }
+
+    /**
+     * Read the fraction of a second as milliseconds, ignoring any digits past 3.
+     * @param text the timestamp text.
+     */
+    private void readMillis(CharSequence text) {
+        int scale;                                          //value of the next digit
+        char ch;                                            //next character
+
+        scale = 100;
+        while ((pos < text.length()) && ((ch = text.charAt(pos)) >= '0') && (ch <= '9')) {
+            millis += ((ch - '0') * scale);
+            scale /= 10;
+            pos++;
+        }
+    }
+
+    /**
+     * Return true if the text has the string at the current position.
+     * @param text the timestamp text.
+     * @param str the string to match.
+     * @return true if it matches.
+     */
+    private boolean matches(CharSequence text, String str) {
+        if ((pos + str.length()) > text.length()) return false;
+        for (int i = 0; i < str.length(); i++) {
+            if (text.charAt(pos + i) != str.charAt(i)) return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Get the day number of the parsed date, counted from 1 January 1970.
+     * This does not depend on the time zone.
+     * @return the day ordinal.
+     */
+    public long dayOrdinal() {
+        long y;                                             //year, from March
+        long m;                                             //month, from March
+        long days;                                          //days from year 0
+
+        y = ((month <= 2) ? (year - 1) : year);
+        m = ((month <= 2) ? (month + 9) : (month - 3));
+        days = ((365 * y) + Math.floorDiv(y, 4) - Math.floorDiv(y, 100) + Math.floorDiv(y, 400)
+                + (((153 * m) + 2) / 5) + (day - 1) + 60);
+
+        return (days - DAYS_0000_TO_1970);
+    }
+
+    /**
+     * Get the hour number of the parsed time, counted from 1 January 1970.
+     * @return the hour ordinal.
+     */
+    public long hourOrdinal() {
+        return ((dayOrdinal() * 24) + hour);
+    }
+
+    /**
+     * Get the millisecond number of the parsed time, counted from 1 January 1970.
+     * Like the day ordinal, this does not depend on the time zone, so it can be used
+     * to order the raw times.
+     * @return the millisecond ordinal.
+     */
+    public long timeOrdinal() {
+        return ((((((hourOrdinal() * 60) + minute) * 60) + second) * 1000) + millis);
+    }
+
+    /**
+     * Get the ordinal of the time bucket that holds the parsed time.
+     * @param timeUnit the bucket time unit, hours or days.
+     * @return the bucket ordinal.
+     */
+    public long bucketOrdinal(String timeUnit) {
+        return (timeUnit.equals(EqConst.HOUR) ? hourOrdinal() : dayOrdinal());
+    }
+
+    /**
+     * Get the parsed time in milliseconds.
+     * @return the time in milliseconds.
+     */
+    public long getTime() {
+        return toMillis(hour, minute, second, millis);
+    }
+
+    /**
+     * Get the start time of the time bucket that holds the parsed time.
+     * @param timeUnit the bucket time unit, hours or days.
+     * @return the time in milliseconds.
+     */
+    public long bucketTime(String timeUnit) {
+        return toMillis((timeUnit.equals(EqConst.HOUR) ? hour : 0), 0, 0, 0);
+    }
+
+    /**
+     * Convert the parsed date and a time into milliseconds in the local time zone.
+     * @param hh hour.
+     * @param mm minute.
+     * @param ss second.
+     * @param ms milliseconds.
+     * @return the time in milliseconds.
+     */
+    private long toMillis(int hh, int mm, int ss, int ms) {
+        calendar.clear();
+        calendar.set(year, (month - 1), day, hh, mm, ss);
+        calendar.set(Calendar.MILLISECOND, ms);
+
+        return calendar.getTimeInMillis();
+    }
+
+    /**
+     * Add the date key of the time bucket that holds the parsed time, in the form
+     * yyyy/MM/dd HH:00:00.
+     * @param key the text to add to.
+     * @param timeUnit the bucket time unit, hours or days.
+     */
+    public void appendBucketKey(StringBuilder key, String timeUnit) {
+        appendPadded(key, year, 4);
+        key.append('/');
+        appendPadded(key, month, 2);
+        key.append('/');
+        appendPadded(key, day, 2);
+        key.append(' ');
+        appendPadded(key, (timeUnit.equals(EqConst.HOUR) ? hour : 0), 2);
+        key.append(":00:00");
+    }
+
+    /**
+     * Add a number, padded with zeros.
+     * @param key the text to add to.
+     * @param value the number.
+     * @param width minimum number of digits.
+     */
+    private static void appendPadded(StringBuilder key, int value, int width) {
+        for (int limit = 10, i = 1; i < width; i++, limit *= 10) {
+            if (value < limit) key.append('0');
+        }
+        key.append(value);
+    }
+
+    /**
+     * Get the time in milliseconds for a date key of the events file, of the form
+     * yyyy/MM/dd HH:mm:ss.
+     * @param dateKey the date key.
+     * @return the time in milliseconds.
+     * @throws ParseException if the key is not in that form.
+     */
+    public long keyTime(String dateKey) throws ParseException {
+        if (parse(dateKey, " ") && (pos == dateKey.length())) return getTime();
+        throw new ParseException("Not a date key: " + dateKey, pos);
+    }
+
+    /**
+     * Get the year.
+     * @return the year.
+     */
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * Get the month.
+     * @return the month, from 1.
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * Get the day of the month.
+     * @return the day, from 1.
+     */
+    public int getDay() {
+        return day;
+    }
+
+    /**
+     * Get the hour of the day.
+     * @return the hour.
+     */
+    public int getHour() {
+        return hour;
+    }
+}